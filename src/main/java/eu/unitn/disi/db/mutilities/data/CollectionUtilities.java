@@ -42,7 +42,10 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 
 /**
  * This is a utility class with fast methods to access files, split strings and
@@ -58,6 +61,9 @@ public final class CollectionUtilities {
     }
 
     public static <T> int intersectionSize(Set<T> checkCollection, Collection<T> inputCollection) {
+        if (checkCollection instanceof IntBitmapSet && inputCollection instanceof IntBitmapSet) {
+            return ((IntBitmapSet) checkCollection).andCardinality((IntBitmapSet) inputCollection);
+        }
         int count = 0;
         for (T t : inputCollection) {
             if (checkCollection.contains(t)) {
@@ -68,6 +74,9 @@ public final class CollectionUtilities {
     }
 
     public static <T> int unionSize(Set<T> s1, Set<T> s2) {
+        if (s1 instanceof IntBitmapSet && s2 instanceof IntBitmapSet) {
+            return ((IntBitmapSet) s1).orCardinality((IntBitmapSet) s2);
+        }
         Set<T> min, max;
         if (s1.size() < s2.size()) {
             min = s1;
@@ -87,6 +96,9 @@ public final class CollectionUtilities {
     }
 
     public static <T> int differenceSize(Set<T> set1, Set<T> set2) {
+        if (set1 instanceof IntBitmapSet && set2 instanceof IntBitmapSet) {
+            return ((IntBitmapSet) set1).andNotCardinality((IntBitmapSet) set2);
+        }
         int count = set1.size();
         for (T t : set1) {
             if (set2.contains(t)) {
@@ -115,13 +127,18 @@ public final class CollectionUtilities {
     }
 
     /**
-     * Produce a new set
+     * Produce a new set, if both sets are {@link IntBitmapSet} the result is a
+     * bitmap too
      * @param <T>
      * @param set1
      * @param set2
      * @return 
      */
+    @SuppressWarnings("unchecked")
     public static <T> Set<T> intersect(Set<T> set1, Set<T> set2) {
+        if (set1 instanceof IntBitmapSet && set2 instanceof IntBitmapSet) {
+            return (Set<T>) ((IntBitmapSet) set1).and((IntBitmapSet) set2);
+        }
         Set<T> a;
         Set<T> b;
 
@@ -160,6 +177,131 @@ public final class CollectionUtilities {
     
     
 
+    /**
+     * Intersect many sets at once. The sets are ordered by size, the elements
+     * of the smallest one are searched in the others from the smallest to the
+     * largest (the most selective first) and discarded at the first miss, no
+     * intermediate set is created.
+     *
+     * @param <T>
+     * @param sets The sets to be intersected
+     * @return a new set with the elements in all the sets, empty if there
+     * are no sets
+     */
+    public static <T> Set<T> intersectAll(Collection<? extends Set<T>> sets) {
+        List<Set<T>> ordered = orderBySize(sets);
+        if (ordered.isEmpty()) {
+            return new HashSet<>();
+        }
+        Set<T> intersection = new HashSet<>(ordered.get(0).size() * 4 / 3);
+        for (T e : ordered.get(0)) {
+            if (containedInAll(e, ordered)) {
+                intersection.add(e);
+            }
+        }
+        return intersection;
+    }
+
+    /**
+     *
+     * @param <T>
+     * @param sets The sets to be intersected
+     * @return the number of elements in all the sets
+     * @see #intersectAll(Collection)
+     */
+    public static <T> int intersectionSizeAll(Collection<? extends Set<T>> sets) {
+        List<Set<T>> ordered = orderBySize(sets);
+        if (ordered.isEmpty()) {
+            return 0;
+        }
+        int count = 0;
+        for (T e : ordered.get(0)) {
+            if (containedInAll(e, ordered)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Check whether many sets have at least {@code k} elements in common,
+     * stopping as soon as {@code k} common elements are found or the
+     * elements left in the smallest set are not enough to reach {@code k}
+     *
+     * @param <T>
+     * @param sets The sets to be intersected
+     * @param k The threshold
+     * @return true if the intersection has at least {@code k} elements
+     */
+    public static <T> boolean intersectionSizeAtLeast(Collection<? extends Set<T>> sets, int k) {
+        if (k <= 0) {
+            return true;
+        }
+        List<Set<T>> ordered = orderBySize(sets);
+        if (ordered.isEmpty()) {
+            return false;
+        }
+        int count = 0;
+        int remaining = ordered.get(0).size();
+        for (T e : ordered.get(0)) {
+            if (count + remaining < k) {
+                return false;
+            }
+            remaining--;
+            if (containedInAll(e, ordered) && ++count >= k) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether {@code inputCollection} has at least {@code k} elements
+     * in {@code checkCollection} with the same early exits of
+     * {@link #intersectionSizeAtLeast(Collection, int)}
+     *
+     * @param <T>
+     * @param checkCollection
+     * @param inputCollection
+     * @param k The threshold
+     * @return true if the intersection has at least {@code k} elements
+     */
+    public static <T> boolean intersectionSizeAtLeast(Set<T> checkCollection, Collection<T> inputCollection, int k) {
+        if (k <= 0) {
+            return true;
+        }
+        int count = 0;
+        int remaining = inputCollection.size();
+        for (T t : inputCollection) {
+            if (count + remaining < k) {
+                return false;
+            }
+            remaining--;
+            if (checkCollection.contains(t) && ++count >= k) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static <T> List<Set<T>> orderBySize(Collection<? extends Set<T>> sets) {
+        List<Set<T>> ordered = new ArrayList<>(sets);
+        ordered.sort((s1, s2) -> Integer.compare(s1.size(), s2.size()));
+        return ordered;
+    }
+
+    /**
+     * Checks the sets after the first (which contains e by construction)
+     */
+    private static <T> boolean containedInAll(T e, List<Set<T>> sets) {
+        for (int i = 1; i < sets.size(); i++) {
+            if (!sets.get(i).contains(e)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public static <T> List<T> intersect(List<T> list1, Set<T> set2) {
         List<T> intersection = new ArrayList<>(set2.size());
 
@@ -171,25 +313,367 @@ public final class CollectionUtilities {
         return intersection;
     }
 
+    /**
+     * Up to this size of the smallest list, the list intersection scans the
+     * largest list for every element instead of hashing the smallest
+     */
+    private static final int NESTED_LOOP_THRESHOLD = 8;
+
+    /**
+     * Intersect two lists, the result contains the elements of the smallest
+     * list that are in the other one, in the same order and with the same
+     * multiplicity
+     *
+     * @param <T>
+     * @param list1
+     * @param list2
+     * @return a new list with the common elements
+     * @see #intersect(List, List, Consumer)
+     */
     public static <T> List<T> intersect(List<T> list1, List<T> list2) {
+        List<T> intersection = new ArrayList<>(Math.min(list1.size(), list2.size()));
+        intersect(list1, list2, intersection::add);
+        return intersection;
+    }
+
+    /**
+     * Intersect two lists passing the elements of the smallest list that are
+     * in the other one to a consumer, in the same order and with the same
+     * multiplicity. If the smallest list is tiny the largest is scanned for
+     * each of its elements, otherwise the smallest list is copied in a
+     * temporary hash set and the largest is scanned once, so that the
+     * intersection is linear and the extra memory is proportional to the
+     * smallest list.
+     *
+     * @param <T>
+     * @param list1
+     * @param list2
+     * @param consumer Receives the common elements
+     */
+    public static <T> void intersect(List<T> list1, List<T> list2, Consumer<? super T> consumer) {
         List<T> a;
         List<T> b;
-        List<T> intersection;
         if (list1.size() <= list2.size()) {
             a = list1;
             b = list2;
-            intersection = new ArrayList<>(list1.size());
         } else {
             a = list2;
             b = list1;
-            intersection = new ArrayList<>(list2.size());
+        }
+        if (a.size() <= NESTED_LOOP_THRESHOLD) {
+            for (T e : a) {
+                if (b.contains(e)) {
+                    consumer.accept(e);
+                }
+            }
+            return;
+        }
+        //Moves the elements of a found in b from pending to found
+        Set<T> pending = new HashSet<>(a);
+        Set<T> found = new HashSet<>();
+        for (Iterator<T> it = b.iterator(); it.hasNext() && !pending.isEmpty();) {
+            T e = it.next();
+            if (pending.remove(e)) {
+                found.add(e);
+            }
         }
         for (T e : a) {
-            if (b.contains(e)) {
-                intersection.add(e);
+            if (found.contains(e)) {
+                consumer.accept(e);
             }
         }
-        return intersection;
+    }
+
+    /**
+     * Intersect two lists comparing the elements with a comparator instead of
+     * equals: the distinct elements of the smallest list are copied and
+     * sorted, the largest list is scanned once searching each element in the
+     * copy, then the matched elements of the smallest list are passed to the
+     * consumer in its order. Useful when hashing the elements is expensive,
+     * the result is the same of {@link #intersect(List, List)} if the
+     * comparator is consistent with equals.
+     *
+     * @param <T>
+     * @param list1
+     * @param list2
+     * @param comparator The order of the elements
+     * @param consumer Receives the common elements
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void intersect(List<T> list1, List<T> list2, Comparator<? super T> comparator, Consumer<? super T> consumer) {
+        List<T> a;
+        List<T> b;
+        if (list1.size() <= list2.size()) {
+            a = list1;
+            b = list2;
+        } else {
+            a = list2;
+            b = list1;
+        }
+        T[] sorted = (T[]) a.toArray();
+        Arrays.sort(sorted, comparator);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (distinct == 0 || comparator.compare(sorted[distinct - 1], sorted[i]) != 0) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        boolean[] found = new boolean[distinct];
+        int missing = distinct;
+        for (Iterator<T> it = b.iterator(); it.hasNext() && missing > 0;) {
+            int i = Arrays.binarySearch(sorted, 0, distinct, it.next(), comparator);
+            if (i >= 0 && !found[i]) {
+                found[i] = true;
+                missing--;
+            }
+        }
+        for (T e : a) {
+            int i = Arrays.binarySearch(sorted, 0, distinct, e, comparator);
+            if (found[i]) {
+                consumer.accept(e);
+            }
+        }
+    }
+
+    /**
+     * Size ratio above which the sorted array intersection gallops
+     */
+    private static final int GALLOP_RATIO = 32;
+
+    /**
+     * Number of common elements of two sorted arrays of distinct values
+     *
+     * @param a The first set, sorted in ascending order
+     * @param b The second set, sorted in ascending order
+     * @return the size of the intersection
+     * @see #intersect(int[], int, int[], int, int[])
+     */
+    public static int intersectionSize(int[] a, int[] b) {
+        return intersect(a, a.length, b, b.length, null);
+    }
+
+    public static int intersectionSize(int[] a, int aLength, int[] b, int bLength) {
+        return intersect(a, aLength, b, bLength, null);
+    }
+
+    public static int unionSize(int[] a, int[] b) {
+        return a.length + b.length - intersect(a, a.length, b, b.length, null);
+    }
+
+    public static int differenceSize(int[] a, int[] b) {
+        return a.length - intersect(a, a.length, b, b.length, null);
+    }
+
+    /**
+     * Intersect two sorted arrays of distinct values writing the result in a
+     * caller-provided buffer
+     *
+     * @param a The first set, sorted in ascending order
+     * @param b The second set, sorted in ascending order
+     * @param out The output, sorted, at least as long as the smallest set
+     * @return the size of the intersection
+     * @see #intersect(int[], int, int[], int, int[])
+     */
+    public static int intersect(int[] a, int[] b, int[] out) {
+        return intersect(a, a.length, b, b.length, out);
+    }
+
+    /**
+     * Intersect the first {@code aLength} values of {@code a} with the first
+     * {@code bLength} of {@code b}, both sorted in ascending order without
+     * duplicates. Sets of similar size are merged with a loop without
+     * data-dependent branches, if a set is more than {@value #GALLOP_RATIO}
+     * times larger the elements of the smallest one are searched galloping
+     * in the largest one. No memory is allocated.
+     *
+     * @param a The first set
+     * @param aLength The number of values of the first set
+     * @param b The second set
+     * @param bLength The number of values of the second set
+     * @param out The output, at least {@code min(aLength, bLength)} long, or
+     * null to only count
+     * @return the size of the intersection
+     */
+    public static int intersect(int[] a, int aLength, int[] b, int bLength, int[] out) {
+        if (aLength > bLength) {
+            return intersect(b, bLength, a, aLength, out);
+        }
+        if (aLength == 0) {
+            return 0;
+        }
+        int count = 0;
+        if (bLength / aLength >= GALLOP_RATIO) {
+            for (int i = 0, j = 0; i < aLength && j < bLength; i++) {
+                j = gallop(b, j, bLength, a[i]);
+                if (j < bLength && b[j] == a[i]) {
+                    if (out != null) {
+                        out[count] = a[i];
+                    }
+                    count++;
+                    j++;
+                }
+            }
+        } else if (out == null) {
+            for (int i = 0, j = 0; i < aLength && j < bLength;) {
+                int x = a[i], y = b[j];
+                count += x == y ? 1 : 0;
+                i += x <= y ? 1 : 0;
+                j += x >= y ? 1 : 0;
+            }
+        } else {
+            for (int i = 0, j = 0; i < aLength && j < bLength;) {
+                int x = a[i], y = b[j];
+                out[count] = x;
+                count += x == y ? 1 : 0;
+                i += x <= y ? 1 : 0;
+                j += x >= y ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * First position in {@code a[from, to)} not smaller than {@code key},
+     * found doubling the distance from {@code from} before a binary search
+     */
+    private static int gallop(int[] a, int from, int to, int key) {
+        if (from >= to || a[from] >= key) {
+            return from;
+        }
+        int low = from, high = from + 1, step = 1;
+        while (high < to && a[high] < key) {
+            low = high;
+            step <<= 1;
+            high = (int) Math.min((long) low + step, to);
+        }
+        low++;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (a[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Number of common elements of two sorted arrays of distinct values
+     *
+     * @param a The first set, sorted in ascending order
+     * @param b The second set, sorted in ascending order
+     * @return the size of the intersection
+     * @see #intersect(long[], int, long[], int, long[])
+     */
+    public static int intersectionSize(long[] a, long[] b) {
+        return intersect(a, a.length, b, b.length, null);
+    }
+
+    public static int intersectionSize(long[] a, int aLength, long[] b, int bLength) {
+        return intersect(a, aLength, b, bLength, null);
+    }
+
+    public static int unionSize(long[] a, long[] b) {
+        return a.length + b.length - intersect(a, a.length, b, b.length, null);
+    }
+
+    public static int differenceSize(long[] a, long[] b) {
+        return a.length - intersect(a, a.length, b, b.length, null);
+    }
+
+    /**
+     * Intersect two sorted arrays of distinct values writing the result in a
+     * caller-provided buffer
+     *
+     * @param a The first set, sorted in ascending order
+     * @param b The second set, sorted in ascending order
+     * @param out The output, sorted, at least as long as the smallest set
+     * @return the size of the intersection
+     * @see #intersect(long[], int, long[], int, long[])
+     */
+    public static int intersect(long[] a, long[] b, long[] out) {
+        return intersect(a, a.length, b, b.length, out);
+    }
+
+    /**
+     * Intersect the first {@code aLength} values of {@code a} with the first
+     * {@code bLength} of {@code b}, both sorted in ascending order without
+     * duplicates. Sets of similar size are merged with a loop without
+     * data-dependent branches, if a set is more than {@value #GALLOP_RATIO}
+     * times larger the elements of the smallest one are searched galloping
+     * in the largest one. No memory is allocated.
+     *
+     * @param a The first set
+     * @param aLength The number of values of the first set
+     * @param b The second set
+     * @param bLength The number of values of the second set
+     * @param out The output, at least {@code min(aLength, bLength)} long, or
+     * null to only count
+     * @return the size of the intersection
+     */
+    public static int intersect(long[] a, int aLength, long[] b, int bLength, long[] out) {
+        if (aLength > bLength) {
+            return intersect(b, bLength, a, aLength, out);
+        }
+        if (aLength == 0) {
+            return 0;
+        }
+        int count = 0;
+        if (bLength / aLength >= GALLOP_RATIO) {
+            for (int i = 0, j = 0; i < aLength && j < bLength; i++) {
+                j = gallop(b, j, bLength, a[i]);
+                if (j < bLength && b[j] == a[i]) {
+                    if (out != null) {
+                        out[count] = a[i];
+                    }
+                    count++;
+                    j++;
+                }
+            }
+        } else if (out == null) {
+            for (int i = 0, j = 0; i < aLength && j < bLength;) {
+                long x = a[i], y = b[j];
+                count += x == y ? 1 : 0;
+                i += x <= y ? 1 : 0;
+                j += x >= y ? 1 : 0;
+            }
+        } else {
+            for (int i = 0, j = 0; i < aLength && j < bLength;) {
+                long x = a[i], y = b[j];
+                out[count] = x;
+                count += x == y ? 1 : 0;
+                i += x <= y ? 1 : 0;
+                j += x >= y ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * First position in {@code a[from, to)} not smaller than {@code key},
+     * found doubling the distance from {@code from} before a binary search
+     */
+    private static int gallop(long[] a, int from, int to, long key) {
+        if (from >= to || a[from] >= key) {
+            return from;
+        }
+        int low = from, high = from + 1, step = 1;
+        while (high < to && a[high] < key) {
+            low = high;
+            step <<= 1;
+            high = (int) Math.min((long) low + step, to);
+        }
+        low++;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (a[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
     }
 
     static class ByteBuffer {
@@ -400,6 +884,522 @@ public final class CollectionUtilities {
         return dest;
     }
 
+    /**
+     * Minimum number of rows sorted sequentially by a fork/join sort task
+     */
+    private static final int MIN_SORT_GRAIN = 1 << 13;
+
+    /**
+     * Minimum number of rows merged sequentially by a fork/join merge task
+     */
+    private static final int MIN_MERGE_GRAIN = 1 << 12;
+
+    /**
+     * Sort a bidimensional array in place using the first value of each array
+     * with a fork/join merge sort running on the common pool
+     *
+     * @param table The bidimensional array to be sorted
+     * @return the input table, sorted
+     * @see #parallelBinaryTableSort(long[][], ForkJoinPool)
+     */
+    public static long[][] parallelBinaryTableSort(long[][] table) {
+        return parallelBinaryTableSort(table, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sort a bidimensional array in place using the first value of each array
+     * with a fork/join merge sort. The table is split recursively, the halves
+     * are merged in parallel as well so that the last merge rounds do not run
+     * on a single thread. No thread is created, the tasks run on the given pool.
+     * The sort is stable.
+     *
+     * @param table The bidimensional array to be sorted
+     * @param pool The pool the sort tasks are submitted to
+     * @return the input table, sorted
+     */
+    public static long[][] parallelBinaryTableSort(long[][] table, ForkJoinPool pool) {
+        return parallelBinaryTableSort(table, pool, new TableComparator());
+    }
+
+    private static long[][] parallelBinaryTableSort(long[][] table, ForkJoinPool pool, Comparator<? super long[]> comparator) {
+        if (table == null || pool == null) {
+            throw new NullPointerException("Input cannot be null");
+        }
+        int grain = Math.max(table.length / (pool.getParallelism() << 2), MIN_SORT_GRAIN);
+        if (table.length <= grain) {
+            Arrays.sort(table, comparator);
+        } else {
+            pool.invoke(new ForkJoinSortTask(table, new long[table.length][], 0, table.length, grain, false, comparator));
+        }
+        return table;
+    }
+
+    /**
+     * Sorts {@code table[from, to)} leaving the result either in the table or
+     * in the work array, the children sort into the opposite array so that
+     * the final merge writes directly into the requested one
+     */
+    private static final class ForkJoinSortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final long[][] table;
+        private final long[][] work;
+        private final int from, to;
+        private final int grain;
+        private final boolean toWork;
+        private final Comparator<? super long[]> comparator;
+
+        ForkJoinSortTask(long[][] table, long[][] work, int from, int to, int grain, boolean toWork, Comparator<? super long[]> comparator) {
+            this.table = table;
+            this.work = work;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.toWork = toWork;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                Arrays.sort(table, from, to, comparator);
+                if (toWork) {
+                    System.arraycopy(table, from, work, from, to - from);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ForkJoinSortTask(table, work, from, mid, grain, !toWork, comparator),
+                    new ForkJoinSortTask(table, work, mid, to, grain, !toWork, comparator));
+            if (toWork) {
+                new ForkJoinMergeTask(table, work, from, mid, mid, to, from, comparator).invoke();
+            } else {
+                new ForkJoinMergeTask(work, table, from, mid, mid, to, from, comparator).invoke();
+            }
+        }
+    }
+
+    /**
+     * Merges the sorted runs {@code src[from1, to1)} and {@code src[from2, to2)}
+     * into {@code dest} starting at {@code destFrom}. Large merges are split
+     * around the median of the longest run and the two halves run in parallel.
+     */
+    private static final class ForkJoinMergeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final long[][] src;
+        private final long[][] dest;
+        private final int from1, to1;
+        private final int from2, to2;
+        private final int destFrom;
+        private final Comparator<? super long[]> comparator;
+
+        ForkJoinMergeTask(long[][] src, long[][] dest, int from1, int to1, int from2, int to2, int destFrom, Comparator<? super long[]> comparator) {
+            this.src = src;
+            this.dest = dest;
+            this.from1 = from1;
+            this.to1 = to1;
+            this.from2 = from2;
+            this.to2 = to2;
+            this.destFrom = destFrom;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+            int n1 = to1 - from1, n2 = to2 - from2;
+            if (n1 + n2 <= MIN_MERGE_GRAIN) {
+                int p = from1, q = from2, d = destFrom;
+                while (p < to1 && q < to2) {
+                    dest[d++] = comparator.compare(src[q], src[p]) < 0 ? src[q++] : src[p++];
+                }
+                System.arraycopy(src, p, dest, d, to1 - p);
+                System.arraycopy(src, q, dest, d + to1 - p, to2 - q);
+                return;
+            }
+            //Rows equal to the pivot coming from the first run stay on the left of the ones of the second (stability)
+            int split1, split2;
+            if (n1 >= n2) {
+                split1 = (from1 + to1) >>> 1;
+                split2 = lowerBound(src, from2, to2, src[split1], comparator);
+            } else {
+                split2 = (from2 + to2) >>> 1;
+                split1 = upperBound(src, from1, to1, src[split2], comparator);
+            }
+            int destSplit = destFrom + (split1 - from1) + (split2 - from2);
+            invokeAll(new ForkJoinMergeTask(src, dest, from1, split1, from2, split2, destFrom, comparator),
+                    new ForkJoinMergeTask(src, dest, split1, to1, split2, to2, destSplit, comparator));
+        }
+
+        private static int lowerBound(long[][] a, int low, int high, long[] key, Comparator<? super long[]> comparator) {
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (comparator.compare(a[mid], key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private static int upperBound(long[][] a, int low, int high, long[] key, Comparator<? super long[]> comparator) {
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (comparator.compare(a[mid], key) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    /**
+     * Minimum number of rows handled by a parallel radix sort chunk
+     */
+    private static final int MIN_RADIX_CHUNK = 1 << 16;
+
+    /**
+     * Sort a bidimensional array with a stable LSD radix sort on the value in
+     * {@code searchField}. The keys are copied in a primitive array so that
+     * each pass does not dereference the rows, digits shared by all the keys
+     * are skipped. It needs two additional arrays of keys and rows, the rows
+     * must be non null.
+     *
+     * @param table The bidimensional array to be sorted
+     * @param searchField The column used as key
+     */
+    public static void binaryTableRadixSort(long[][] table, int searchField) {
+        radixSort(table, searchField, null);
+    }
+
+    /**
+     * Sort a bidimensional array with a stable LSD radix sort on the value in
+     * {@code searchField} running on the common pool
+     *
+     * @param table The bidimensional array to be sorted
+     * @param searchField The column used as key
+     * @return the input table, sorted
+     * @see #binaryTableRadixSort(long[][], int)
+     */
+    public static long[][] parallelBinaryTableRadixSort(long[][] table, int searchField) {
+        return parallelBinaryTableRadixSort(table, searchField, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Sort a bidimensional array with a stable LSD radix sort on the value in
+     * {@code searchField}. Each pass splits the table in chunks that compute
+     * their own histogram and then scatter in parallel at the offsets given by
+     * the prefix sums of all the histograms.
+     *
+     * @param table The bidimensional array to be sorted
+     * @param searchField The column used as key
+     * @param pool The pool the chunk tasks are submitted to
+     * @return the input table, sorted
+     * @see #binaryTableRadixSort(long[][], int)
+     */
+    public static long[][] parallelBinaryTableRadixSort(long[][] table, int searchField, ForkJoinPool pool) {
+        if (pool == null) {
+            throw new NullPointerException("Input cannot be null");
+        }
+        radixSort(table, searchField, pool);
+        return table;
+    }
+
+    private static void radixSort(long[][] table, int searchField, ForkJoinPool pool) {
+        if (table == null) {
+            throw new NullPointerException("Input cannot be null");
+        }
+        int n = table.length;
+        if (n < 2) {
+            return;
+        }
+        long[] keys = new long[n];
+        long varying = 0;
+        for (int i = 0; i < n; i++) {
+            //Flip the sign so that negative keys come first in unsigned order
+            keys[i] = table[i][searchField] ^ Long.MIN_VALUE;
+            varying |= keys[i] ^ keys[0];
+        }
+        if (varying == 0) {
+            return;
+        }
+        int chunks = pool == null ? 1 : Math.max(1, Math.min(pool.getParallelism() << 2, n / MIN_RADIX_CHUNK));
+        int chunkSize = (n + chunks - 1) / chunks;
+        long[] srcKeys = keys, dstKeys = new long[n], tmpKeys;
+        long[][] srcRows = table, dstRows = new long[n][], tmpRows;
+        int[][] counts = new int[chunks][];
+        List<RadixChunkTask> tasks = new ArrayList<>(chunks);
+
+        for (int shift = 0; shift < Long.SIZE; shift += RADIX_BITS) {
+            if ((varying >>> shift & (RADIX - 1)) == 0) {
+                continue;
+            }
+            //HISTOGRAM
+            tasks.clear();
+            for (int c = 0; c < chunks; c++) {
+                counts[c] = new int[RADIX];
+                tasks.add(new RadixChunkTask(srcKeys, srcRows, dstKeys, dstRows, c * chunkSize,
+                        Math.min(n, (c + 1) * chunkSize), shift, counts[c], false));
+            }
+            invokeRadixTasks(pool, tasks);
+            //Offsets: digit first, then chunk, so that equal digits keep their order
+            for (int b = 0, sum = 0; b < RADIX; b++) {
+                for (int c = 0; c < chunks; c++) {
+                    int count = counts[c][b];
+                    counts[c][b] = sum;
+                    sum += count;
+                }
+            }
+            //SCATTER
+            for (RadixChunkTask task : tasks) {
+                task.reinitialize();
+                task.scatter = true;
+            }
+            invokeRadixTasks(pool, tasks);
+            tmpKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = tmpKeys;
+            tmpRows = srcRows;
+            srcRows = dstRows;
+            dstRows = tmpRows;
+        }
+        if (srcRows != table) {
+            System.arraycopy(srcRows, 0, table, 0, n);
+        }
+    }
+
+    private static void invokeRadixTasks(ForkJoinPool pool, final List<RadixChunkTask> tasks) {
+        if (pool == null) {
+            for (RadixChunkTask task : tasks) {
+                task.invoke();
+            }
+        } else {
+            pool.invoke(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        }
+    }
+
+    /**
+     * Either counts the digits of a chunk of keys or scatters the chunk to
+     * the offsets in {@code counts}
+     */
+    private static final class RadixChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final long[] srcKeys, dstKeys;
+        private final long[][] srcRows, dstRows;
+        private final int from, to;
+        private final int shift;
+        private final int[] counts;
+        private boolean scatter;
+
+        RadixChunkTask(long[] srcKeys, long[][] srcRows, long[] dstKeys, long[][] dstRows, int from, int to, int shift, int[] counts, boolean scatter) {
+            this.srcKeys = srcKeys;
+            this.srcRows = srcRows;
+            this.dstKeys = dstKeys;
+            this.dstRows = dstRows;
+            this.from = from;
+            this.to = to;
+            this.shift = shift;
+            this.counts = counts;
+            this.scatter = scatter;
+        }
+
+        @Override
+        protected void compute() {
+            if (scatter) {
+                for (int i = from; i < to; i++) {
+                    int pos = counts[(int) (srcKeys[i] >>> shift) & (RADIX - 1)]++;
+                    dstKeys[pos] = srcKeys[i];
+                    dstRows[pos] = srcRows[i];
+                }
+            } else {
+                for (int i = from; i < to; i++) {
+                    counts[(int) (srcKeys[i] >>> shift) & (RADIX - 1)]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sort a bidimensional array on several columns, the rows are ordered by
+     * the first key column, ties are broken by the second and so on.
+     *
+     * @param table The bidimensional array to be sorted
+     * @param keyColumns The key columns, most significant first
+     */
+    public static void binaryTableSort(long[][] table, int... keyColumns) {
+        Arrays.sort(table, new MultiColumnComparator(keyColumns));
+    }
+
+    /**
+     * Sort a bidimensional array on several columns with a fork/join merge
+     * sort, see {@link #parallelBinaryTableSort(long[][], ForkJoinPool)}
+     *
+     * @param table The bidimensional array to be sorted
+     * @param pool The pool the sort tasks are submitted to
+     * @param keyColumns The key columns, most significant first
+     * @return the input table, sorted
+     */
+    public static long[][] parallelBinaryTableSort(long[][] table, ForkJoinPool pool, int... keyColumns) {
+        return parallelBinaryTableSort(table, pool, new MultiColumnComparator(keyColumns));
+    }
+
+    /**
+     * Sort a bidimensional array on several columns with one stable radix
+     * sort per column, from the least significant to the most significant
+     *
+     * @param table The bidimensional array to be sorted
+     * @param keyColumns The key columns, most significant first
+     * @throws IllegalArgumentException If no key column is given
+     */
+    public static void binaryTableRadixSort(long[][] table, int... keyColumns) {
+        if (keyColumns == null || keyColumns.length == 0) {
+            throw new IllegalArgumentException("At least a key column is required");
+        }
+        for (int i = keyColumns.length - 1; i >= 0; i--) {
+            radixSort(table, keyColumns[i], null);
+        }
+    }
+
+    /**
+     * Compares the rows column by column on the key columns
+     */
+    private static final class MultiColumnComparator implements Comparator<long[]> {
+
+        private final int[] keyColumns;
+
+        MultiColumnComparator(int[] keyColumns) {
+            if (keyColumns == null || keyColumns.length == 0) {
+                throw new IllegalArgumentException("At least a key column is required");
+            }
+            this.keyColumns = keyColumns.clone();
+        }
+
+        @Override
+        public int compare(long[] o1, long[] o2) {
+            if (o1 == null) {
+                return -1;
+            }
+            if (o2 == null) {
+                return 1;
+            }
+            for (int column : keyColumns) {
+                if (o1[column] != o2[column]) {
+                    return o1[column] < o2[column] ? -1 : 1;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Compares the key columns of a row with a prefix of the key
+     */
+    private static int comparePrefix(long[] row, int[] keyColumns, long[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            long value = row[keyColumns[i]];
+            if (value != prefix[i]) {
+                return value < prefix[i] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    private static void checkPrefix(int[] keyColumns, long[] prefix) {
+        if (prefix.length > keyColumns.length) {
+            throw new IllegalArgumentException("Prefix of " + prefix.length + " values on " + keyColumns.length + " key columns");
+        }
+    }
+
+    /**
+     * Search in a table sorted on {@code keyColumns} the first row whose key
+     * columns are greater or equal than {@code prefix}
+     *
+     * @param table The table sorted on the key columns
+     * @param keyColumns The key columns, most significant first
+     * @param prefix The values of the first {@code prefix.length} key columns
+     * @return the first row not smaller than the prefix
+     */
+    public static int binaryTableLowerBound(long[][] table, int[] keyColumns, long... prefix) {
+        checkPrefix(keyColumns, prefix);
+        int low = 0, high = table.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparePrefix(table[mid], keyColumns, prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Search in a table sorted on {@code keyColumns} the first row whose key
+     * columns are greater than {@code prefix}
+     *
+     * @param table The table sorted on the key columns
+     * @param keyColumns The key columns, most significant first
+     * @param prefix The values of the first {@code prefix.length} key columns
+     * @return the first row greater than the prefix
+     */
+    public static int binaryTableUpperBound(long[][] table, int[] keyColumns, long... prefix) {
+        checkPrefix(keyColumns, prefix);
+        int low = 0, high = table.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparePrefix(table[mid], keyColumns, prefix) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Search all the rows starting with a prefix in a table sorted on
+     * {@code keyColumns}, e.g. all the edges with a given source and label in
+     * a table sorted on (source, label, destination)
+     *
+     * @param table The table sorted on the key columns
+     * @param keyColumns The key columns, most significant first
+     * @param prefix The values of the first {@code prefix.length} key columns
+     * @return the range {@code [from, to)} of the rows matching the prefix,
+     * empty if none matches
+     */
+    public static int[] binaryTablePrefixRange(long[][] table, int[] keyColumns, long... prefix) {
+        int from = binaryTableLowerBound(table, keyColumns, prefix);
+        int to = from;
+        if (from < table.length && comparePrefix(table[from], keyColumns, prefix) == 0) {
+            //Search the end only after the first match
+            int low = from + 1, high = table.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (comparePrefix(table[mid], keyColumns, prefix) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            to = low;
+        }
+        return new int[]{from, to};
+    }
+
     public static int binaryTableSearch(long[][] table, long vertex) {
         return binaryTableSearch(table, 0, vertex);
     }
@@ -427,6 +1427,149 @@ public final class CollectionUtilities {
         return -(low + 1);  // key not found.
     }
 
+    /**
+     * Search the first occurrence of a key in a table sorted on
+     * {@code searchField}
+     *
+     * @param table The table sorted on {@code searchField}
+     * @param searchField The column the table is sorted on
+     * @param key The key to be searched
+     * @return the first row whose key is greater or equal than {@code key}
+     */
+    public static int binaryTableLowerBound(long[][] table, int searchField, long key) {
+        return binaryTableLowerBound0(table, searchField, 0, table.length, key);
+    }
+
+    public static int binaryTableLowerBound0(long[][] a, int searchField, int fromIndex, int toIndex, long key) {
+        int low = fromIndex;
+        int high = toIndex;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (a[mid][searchField] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Search the end of the occurrences of a key in a table sorted on
+     * {@code searchField}
+     *
+     * @param table The table sorted on {@code searchField}
+     * @param searchField The column the table is sorted on
+     * @param key The key to be searched
+     * @return the first row whose key is greater than {@code key}
+     */
+    public static int binaryTableUpperBound(long[][] table, int searchField, long key) {
+        return binaryTableUpperBound0(table, searchField, 0, table.length, key);
+    }
+
+    public static int binaryTableUpperBound0(long[][] a, int searchField, int fromIndex, int toIndex, long key) {
+        int low = fromIndex;
+        int high = toIndex;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (a[mid][searchField] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Search all the occurrences of a key in a table sorted on
+     * {@code searchField}
+     *
+     * @param table The table sorted on {@code searchField}
+     * @param searchField The column the table is sorted on
+     * @param key The key to be searched
+     * @return the range {@code [from, to)} of the rows containing the key,
+     * empty if the key is not in the table
+     */
+    public static int[] binaryTableRange(long[][] table, int searchField, long key) {
+        int from = binaryTableLowerBound0(table, searchField, 0, table.length, key);
+        int to = from < table.length && table[from][searchField] == key
+                ? gallopUpperBound(table, searchField, from, table.length, key)
+                : from;
+        return new int[]{from, to};
+    }
+
+    /**
+     * Search many keys at once in a table sorted on {@code searchField}. Since
+     * the keys are sorted, each search starts where the previous one ended
+     * and gallops (exponential search) forward, so close keys cost a few
+     * comparisons and the whole batch is a single pass on the table.
+     *
+     * @param table The table sorted on {@code searchField}
+     * @param searchField The column the table is sorted on
+     * @param keys The keys to be searched, sorted in ascending order
+     * @param from Output, the first row containing {@code keys[i]}, at least
+     * {@code keys.length} long
+     * @param to Output, the end (exclusive) of the rows containing
+     * {@code keys[i]}, {@code from[i] == to[i]} if the key is not in the table
+     * @return the number of keys found in the table
+     */
+    public static int binaryTableBatchSearch(long[][] table, int searchField, long[] keys, int[] from, int[] to) {
+        if (from.length < keys.length || to.length < keys.length) {
+            throw new IllegalArgumentException("Output arrays shorter than the " + keys.length + " keys");
+        }
+        int found = 0;
+        int cursor = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0 && keys[i] < keys[i - 1]) {
+                throw new IllegalArgumentException("Keys are not sorted at position " + i);
+            }
+            cursor = gallopLowerBound(table, searchField, cursor, table.length, keys[i]);
+            from[i] = cursor;
+            if (cursor < table.length && table[cursor][searchField] == keys[i]) {
+                to[i] = gallopUpperBound(table, searchField, cursor, table.length, keys[i]);
+                found++;
+            } else {
+                to[i] = cursor;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Lower bound of {@code key} in {@code a[from, to)} found doubling the
+     * distance from {@code from} before the binary search, it takes
+     * O(log d) comparisons where d is the distance of the result from
+     * {@code from}
+     */
+    private static int gallopLowerBound(long[][] a, int searchField, int from, int to, long key) {
+        if (from >= to || a[from][searchField] >= key) {
+            return from;
+        }
+        int low = from, high = from + 1, step = 1;
+        while (high < to && a[high][searchField] < key) {
+            low = high;
+            step <<= 1;
+            high = (int) Math.min((long) low + step, to);
+        }
+        return binaryTableLowerBound0(a, searchField, low + 1, Math.min(high, to), key);
+    }
+
+    private static int gallopUpperBound(long[][] a, int searchField, int from, int to, long key) {
+        if (from >= to || a[from][searchField] > key) {
+            return from;
+        }
+        int low = from, high = from + 1, step = 1;
+        while (high < to && a[high][searchField] <= key) {
+            low = high;
+            step <<= 1;
+            high = (int) Math.min((long) low + step, to);
+        }
+        return binaryTableUpperBound0(a, searchField, low + 1, Math.min(high, to), key);
+    }
+
     /**
      * Read a file into a collection of strings
      *
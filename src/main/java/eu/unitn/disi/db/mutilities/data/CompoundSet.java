@@ -7,13 +7,23 @@ package eu.unitn.disi.db.mutilities.data;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
 
 /**
  * A set which is backed by a list of sets, does not assure that things are
- * unique
+ * unique.
+ *
+ * An indexed compound set keeps a map from each element to the first member
+ * set containing it: the size is exact and deduplicated, {@code contains} is
+ * a single lookup and the iteration returns each element once. The member
+ * sets must not be modified while indexed, or {@link #reindex()} must be
+ * called afterwards.
  *
  * @author Matteo Lissandrini <ml@disi.unitn.eu>
  * @param <T>
@@ -21,25 +31,77 @@ import java.util.Set;
 public class CompoundSet<T> implements Set<T> {
 
     private final List<Set<T>> sets;
+    /* element -> first member set containing it, null if not indexed */
+    private final Map<T, Set<T>> index;
 
     public CompoundSet(List<Set<T>> sets) {
-        this.sets = sets;
+        this(sets, false);
     }
 
     public CompoundSet() {
-        this.sets = new ArrayList<>();
+        this(new ArrayList<>(), false);
+    }
+
+    /**
+     *
+     * @param sets The member sets
+     * @param indexed True to maintain the element index
+     */
+    public CompoundSet(List<Set<T>> sets, boolean indexed) {
+        this.sets = sets;
+        this.index = indexed ? new HashMap<>() : null;
+        reindex();
     }
 
     public void addSet(Set<T> set) {
         this.sets.add(set);
+        index(set);
+    }
+
+    public boolean isIndexed() {
+        return index != null;
+    }
+
+    /**
+     * Rebuilds the index after the member sets have been modified, does
+     * nothing if the set is not indexed
+     */
+    public void reindex() {
+        if (index != null) {
+            index.clear();
+            for (Set<T> s : sets) {
+                index(s);
+            }
+        }
+    }
+
+    private void index(Set<T> set) {
+        if (index != null) {
+            for (T e : set) {
+                index.putIfAbsent(e, set);
+            }
+        }
     }
 
     /**
      *
-     * @return the apparent size
+     * @param o The element
+     * @return the first member set containing {@code o}, null if none or if
+     * the set is not indexed
+     */
+    public Set<T> setOf(Object o) {
+        return index == null ? null : index.get(o);
+    }
+
+    /**
+     *
+     * @return the exact size if indexed, the apparent size otherwise
      */
     @Override
     public int size() {
+        if (index != null) {
+            return index.size();
+        }
         int apparentSize = 0;
         for (Set<? extends T> s : sets) {
             apparentSize += s.size();
@@ -49,6 +111,9 @@ public class CompoundSet<T> implements Set<T> {
 
     @Override
     public boolean isEmpty() {
+        if (index != null) {
+            return index.isEmpty();
+        }
         if (this.sets.isEmpty()) {
             return true;
         }
@@ -63,6 +128,9 @@ public class CompoundSet<T> implements Set<T> {
 
     @Override
     public boolean contains(Object o) {
+        if (index != null) {
+            return index.containsKey(o);
+        }
         for (Set<? extends T> s : this.sets) {
             if (s.contains(o)) {
                 return true;
@@ -73,6 +141,9 @@ public class CompoundSet<T> implements Set<T> {
 
     @Override
     public Iterator<T> iterator() {
+        if (index != null) {
+            return Collections.unmodifiableSet(index.keySet()).iterator();
+        }
         ArrayList<Iterator<T>> iters = new ArrayList<>();
         for(Set<T> s : this.sets){
             iters.add(s.iterator());
@@ -80,6 +151,25 @@ public class CompoundSet<T> implements Set<T> {
         return new CompoundIterator<>(iters);
     }
 
+    /**
+     * Splits at member set boundaries first, then delegates to the
+     * spliterators of the member sets. The spliterator is {@code SIZED} if
+     * the member sets are, and {@code DISTINCT} only if indexed.
+     *
+     * @return a spliterator over the elements
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        if (index != null) {
+            return Collections.unmodifiableSet(index.keySet()).spliterator();
+        }
+        List<Spliterator<T>> parts = new ArrayList<>(sets.size());
+        for (Set<T> s : this.sets) {
+            parts.add(s.spliterator());
+        }
+        return new CompoundSpliterator<>(parts, false);
+    }
+
     @Override
     public Object[] toArray() {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
@@ -108,7 +198,9 @@ public class CompoundSet<T> implements Set<T> {
     
     
     public boolean addAll(Set<T> c) {
-        return this.sets.add(c);
+        boolean added = this.sets.add(c);
+        index(c);
+        return added;
     }
     
     @Override
@@ -0,0 +1,128 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package eu.unitn.disi.db.mutilities.data;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A compound spliterator, which traverses all of the elements of the given
+ * spliterators, the parallel counterpart of {@link CompoundIterator}. It
+ * splits between the spliterators first, in two halves of about the same
+ * estimated size, and when a single spliterator is left it delegates the
+ * split to it.
+ *
+ * It is {@link #SIZED} if all the spliterators are, and {@link #DISTINCT} if
+ * all of them are and they are declared disjoint. The characteristics are
+ * computed once and do not change during the traversal; they are only
+ * narrowed when the last spliterator is split, since it may stop being
+ * sized.
+ *
+ * @param <E>
+ */
+public class CompoundSpliterator<E> implements Spliterator<E> {
+
+    private static final int INHERITED = SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+
+    private final List<Spliterator<E>> parts;
+    private final boolean disjoint;
+    /* the spliterator in use */
+    private int index;
+    private final int fence;
+    private int characteristics;
+
+    /**
+     * Construct a CompoundSpliterator over the given spliterators.
+     *
+     * @param parts List of spliterators to traverse, they must not be used
+     * elsewhere
+     * @param disjoint True if no element is returned by two spliterators
+     */
+    public CompoundSpliterator(List<Spliterator<E>> parts, boolean disjoint) {
+        this(parts, disjoint, 0, parts.size());
+    }
+
+    private CompoundSpliterator(List<Spliterator<E>> parts, boolean disjoint, int index, int fence) {
+        if (parts == null) {
+            throw new IllegalArgumentException("List of spliterators is null");
+        }
+        this.parts = parts;
+        this.disjoint = disjoint;
+        this.index = index;
+        this.fence = fence;
+        this.characteristics = INHERITED | (disjoint ? DISTINCT : 0);
+        for (int i = index; i < fence; i++) {
+            characteristics &= parts.get(i).characteristics();
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super E> action) {
+        for (; index < fence; index++) {
+            if (parts.get(index).tryAdvance(action)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super E> action) {
+        for (; index < fence; index++) {
+            parts.get(index).forEachRemaining(action);
+        }
+    }
+
+    /**
+     * Splits off the spliterators before the middle of the estimated size, or
+     * splits the last spliterator left
+     *
+     * @return a spliterator over a prefix of the elements, null if it cannot
+     * be split
+     */
+    @Override
+    public Spliterator<E> trySplit() {
+        if (fence - index == 1) {
+            Spliterator<E> split = parts.get(index).trySplit();
+            if (split != null) {
+                characteristics &= parts.get(index).characteristics();
+            }
+            return split;
+        }
+        if (fence - index < 2) {
+            return null;
+        }
+        long half = estimateSize() / 2;
+        long prefix = parts.get(index).estimateSize();
+        int mid = index + 1;
+        while (mid < fence - 1 && prefix < half) {
+            prefix += parts.get(mid++).estimateSize();
+        }
+        Spliterator<E> split = mid - index == 1
+                ? parts.get(index)
+                : new CompoundSpliterator<>(parts, disjoint, index, mid);
+        index = mid;
+        return split;
+    }
+
+    @Override
+    public long estimateSize() {
+        long size = 0;
+        for (int i = index; i < fence; i++) {
+            size += parts.get(i).estimateSize();
+            if (size < 0) {
+                return Long.MAX_VALUE;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+}
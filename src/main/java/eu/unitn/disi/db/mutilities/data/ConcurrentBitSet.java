@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2012 Davide Mottin <mottin@disi.unitn.eu>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package eu.unitn.disi.db.mutilities.data;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent set of the ids in a bounded range {@code [0, size)} backed by
+ * a bitmap updated with CAS: one bit per possible id, {@link #add(long)} and
+ * {@link #remove(long)} are lock-free and do not allocate. When the ids are
+ * dense (e.g. the vertices of a graph) it is the smallest concurrent set:
+ * 500M ids take 60MB. Iterators are weakly consistent.
+ */
+public class ConcurrentBitSet extends AbstractSet<Long> implements ConcurrentSet<Long> {
+
+    private final AtomicLongArray words;
+    private final long range;
+    private final LongAdder size = new LongAdder();
+
+    /**
+     *
+     * @param range The number of possible ids, the set holds
+     * {@code [0, range)}
+     */
+    public ConcurrentBitSet(long range) {
+        if (range <= 0 || range > (long) Integer.MAX_VALUE * Long.SIZE) {
+            throw new IllegalArgumentException("range = " + range + "; expected a value in [1, 2^37).");
+        }
+        this.range = range;
+        this.words = new AtomicLongArray((int) ((range + Long.SIZE - 1) >>> 6));
+    }
+
+    private void checkRange(long id) {
+        if (id < 0 || id >= range) {
+            throw new IndexOutOfBoundsException("Id " + id + " out of [0, " + range + ")");
+        }
+    }
+
+    /**
+     *
+     * @param id The id to be added
+     * @return true if the id was not in the set
+     */
+    public boolean add(long id) {
+        checkRange(id);
+        int w = (int) (id >>> 6);
+        long bit = 1L << id;
+        long word;
+        do {
+            word = words.get(w);
+            if ((word & bit) != 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(w, word, word | bit));
+        size.increment();
+        return true;
+    }
+
+    /**
+     *
+     * @param id The id to be removed
+     * @return true if the id was in the set
+     */
+    public boolean remove(long id) {
+        checkRange(id);
+        int w = (int) (id >>> 6);
+        long bit = 1L << id;
+        long word;
+        do {
+            word = words.get(w);
+            if ((word & bit) == 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(w, word, word & ~bit));
+        size.decrement();
+        return true;
+    }
+
+    public boolean contains(long id) {
+        return id >= 0 && id < range && (words.get((int) (id >>> 6)) & (1L << id)) != 0;
+    }
+
+    @Override
+    public boolean add(Long e) {
+        return add(e.longValue());
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long && contains(((Long) o).longValue());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Long && contains(((Long) o).longValue()) && remove(((Long) o).longValue());
+    }
+
+    /**
+     *
+     * @return the number of ids, exact only if no update is in progress
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(size.sum(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size.sum() == 0;
+    }
+
+    /**
+     *
+     * @return the number of possible ids
+     */
+    public long range() {
+        return range;
+    }
+
+    /**
+     * Removes all the ids, not atomic with respect to concurrent updates
+     */
+    @Override
+    public void clear() {
+        for (int w = 0; w < words.length(); w++) {
+            long word = words.getAndSet(w, 0L);
+            size.add(-Long.bitCount(word));
+        }
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        return new Iterator<Long>() {
+            private long next = nextSetBit(0);
+            private long last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public Long next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = nextSetBit(next + 1);
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                ConcurrentBitSet.this.remove(last);
+                last = -1;
+            }
+        };
+    }
+
+    /**
+     *
+     * @param from The first id to be checked
+     * @return the first id in the set greater or equal than {@code from}, -1
+     * if there is none
+     */
+    public long nextSetBit(long from) {
+        if (from >= range) {
+            return -1;
+        }
+        int w = (int) (from >>> 6);
+        long word = words.get(w) & (-1L << from);
+        while (word == 0) {
+            if (++w == words.length()) {
+                return -1;
+            }
+            word = words.get(w);
+        }
+        return ((long) w << 6) + Long.numberOfTrailingZeros(word);
+    }
+}
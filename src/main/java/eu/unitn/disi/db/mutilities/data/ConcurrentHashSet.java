@@ -8,16 +8,19 @@ package eu.unitn.disi.db.mutilities.data;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Objects;
 import java.util.Set;
 import java.util.Spliterator;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  *
@@ -33,6 +36,12 @@ import java.util.stream.Stream;
  */
 public class ConcurrentHashSet<E> implements ConcurrentSet<E>, Serializable {
 
+    /**
+     * Collections larger than this are processed in parallel by the bulk
+     * operations
+     */
+    public static final int PARALLELISM_THRESHOLD = 1 << 14;
+
     private final ConcurrentMap<E, Object> m;
     private transient Set<E> s;
 
@@ -140,20 +149,111 @@ public class ConcurrentHashSet<E> implements ConcurrentSet<E>, Serializable {
         return s.containsAll(c);
     }
 
+    /**
+     * Removes the elements of {@code c}, large inputs are processed in
+     * parallel: the smallest between this set and {@code c} is traversed.
+     *
+     * @param c
+     * @return true if the set changed
+     */
     @Override
     public boolean removeAll(Collection<?> c) {
-        return s.removeAll(c);
+        Objects.requireNonNull(c);
+        AtomicBoolean modified = new AtomicBoolean();
+        if (c.size() <= m.size() || !(c instanceof Set) || !(m instanceof ConcurrentHashMap)) {
+            forEachParallel(c, (e) -> {
+                if (m.remove(e) != null && !modified.get()) {
+                    modified.set(true);
+                }
+            });
+        } else {
+            ((ConcurrentHashMap<E, Object>) m).forEachKey(PARALLELISM_THRESHOLD, (e) -> {
+                if (c.contains(e) && m.remove(e) != null && !modified.get()) {
+                    modified.set(true);
+                }
+            });
+        }
+        return modified.get();
     }
 
+    /**
+     * Retains the elements of {@code c}, the keys are traversed in parallel
+     * when the set is large (if {@code c} is not a set it is copied in a
+     * temporary hash set)
+     *
+     * @param c
+     * @return true if the set changed
+     */
     @Override
     public boolean retainAll(Collection<?> c) {
-        return s.retainAll(c);
+        Objects.requireNonNull(c);
+        if (!(m instanceof ConcurrentHashMap)) {
+            return s.retainAll(c);
+        }
+        Collection<?> lookup = c instanceof Set ? c : new HashSet<>(c);
+        AtomicBoolean modified = new AtomicBoolean();
+        ((ConcurrentHashMap<E, Object>) m).forEachKey(PARALLELISM_THRESHOLD, (e) -> {
+            if (!lookup.contains(e) && m.remove(e) != null && !modified.get()) {
+                modified.set(true);
+            }
+        });
+        return modified.get();
     }
 
+    /**
+     * Adds the elements of {@code c}, inputs larger than
+     * {@link #PARALLELISM_THRESHOLD} are split with their spliterator (or the
+     * bulk traversal of the map, for another {@link ConcurrentHashSet}) and
+     * added in parallel
+     *
+     * @param c
+     * @return true if the set changed
+     */
     @Override
     public boolean addAll(Collection<? extends E> c) {
-        // Use Java 8 Stream 
-        return Objects.requireNonNull(c).stream().map((e) -> add(e)).filter((b) -> b).count() > 0;
+        Objects.requireNonNull(c);
+        AtomicBoolean modified = new AtomicBoolean();
+        forEachParallel(c, (e) -> {
+            if (m.put(e, Boolean.TRUE) == null && !modified.get()) {
+                modified.set(true);
+            }
+        });
+        return modified.get();
+    }
+
+    /**
+     * Applies the action to the elements of {@code c} in parallel if the
+     * collection is large
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> void forEachParallel(Collection<? extends T> c, Consumer<? super T> action) {
+        if (c.size() < PARALLELISM_THRESHOLD) {
+            c.forEach(action);
+        } else if (c instanceof ConcurrentHashSet && ((ConcurrentHashSet<?>) c).m instanceof ConcurrentHashMap) {
+            ((ConcurrentHashMap<T, Object>) ((ConcurrentHashSet<?>) c).m).forEachKey(PARALLELISM_THRESHOLD, action);
+        } else {
+            StreamSupport.stream(c.spliterator(), true).forEach(action);
+        }
+    }
+
+    /**
+     * Merges many sets, e.g. the partial results of several threads, into a
+     * new set sized for all of them
+     *
+     * @param <E>
+     * @param sets The sets to be merged
+     * @return a new set with the elements of all the sets
+     */
+    public static <E> ConcurrentHashSet<E> merge(Collection<? extends ConcurrentHashSet<? extends E>> sets) {
+        long total = 0;
+        for (ConcurrentHashSet<? extends E> set : sets) {
+            total += set.size();
+        }
+        ConcurrentHashSet<E> merged = new ConcurrentHashSet<>((int) Math.min(Math.max(total, 16), 1 << 30));
+        for (ConcurrentHashSet<? extends E> set : sets) {
+            merged.addAll(set);
+        }
+        return merged;
     }
 
     // Override default methods in Collection
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2012 Davide Mottin <mottin@disi.unitn.eu>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package eu.unitn.disi.db.mutilities.data;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A thread-safe accumulator of the TOP K greatest elements, with the same
+ * semantics of {@link FixedSizePriorityQueue}. Each thread adds to its own
+ * {@link FixedSizePriorityQueue}, so writers never contend. Whenever a local
+ * queue is full its lowest element is published as a global threshold: the
+ * threshold is the greatest of such lowest elements, and K elements greater
+ * or equal to it are already known, hence any element not greater than the
+ * threshold is rejected with a single volatile read, without locking.
+ *
+ * <p>
+ * {@link #asList()} merges the local queues in the global top K. Each thread
+ * reaches its queue through a {@link ThreadLocal} of the accumulator, while
+ * the accumulator only keeps a list of the queues: threads are never
+ * referenced, so terminated threads are not retained. The queue of every
+ * thread that ever added an element is kept, since it is part of the result,
+ * until {@link #clear()} drops all of them or the accumulator is garbage
+ * collected; pool threads then hold only a stale {@link ThreadLocal} entry,
+ * which is expunged by the JDK.
+ * </p>
+ *
+ * @param <E> The type of the elements
+ */
+public class ConcurrentTopK<E> implements Iterable<E> {
+
+    private final Comparator<? super E> comparator;
+    private final int maxSize;
+    private final AtomicReference<E> threshold = new AtomicReference<>();
+    private final List<FixedSizePriorityQueue<E>> queues = new CopyOnWriteArrayList<>();
+    private volatile ThreadLocal<FixedSizePriorityQueue<E>> local = newLocal();
+
+    /**
+     * Constructs a {@link ConcurrentTopK} with the specified {@code maxSize}
+     * and a NaturalOrder Comparator.
+     *
+     * @param maxSize - The number of elements to keep, must be a positive
+     * integer.
+     */
+    public ConcurrentTopK(final int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize = " + maxSize + "; expected a positive integer.");
+        }
+        this.comparator = null;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Constructs a {@link ConcurrentTopK} with the specified {@code maxSize}
+     * and {@code comparator}.
+     *
+     * @param maxSize - The number of elements to keep, must be a positive
+     * integer.
+     * @param comparator - The comparator to be used to compare the elements,
+     * must be non-null.
+     */
+    public ConcurrentTopK(final int maxSize, final Comparator<? super E> comparator) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize = " + maxSize + "; expected a positive integer.");
+        }
+        if (comparator == null) {
+            throw new NullPointerException("Comparator is null.");
+        }
+        this.comparator = comparator;
+        this.maxSize = maxSize;
+    }
+
+    private ThreadLocal<FixedSizePriorityQueue<E>> newLocal() {
+        return ThreadLocal.withInitial(this::newLocalQueue);
+    }
+
+    /**
+     * Creates the queue of the calling thread and registers it for merging
+     */
+    private FixedSizePriorityQueue<E> newLocalQueue() {
+        FixedSizePriorityQueue<E> queue = comparator == null
+                ? new FixedSizePriorityQueue<>(maxSize)
+                : new FixedSizePriorityQueue<>(maxSize, comparator);
+        queues.add(queue);
+        return queue;
+    }
+
+    /**
+     * Offers an element, as in {@link FixedSizePriorityQueue#add(Object)}
+     *
+     * @param e - Element to be added, must be non-null.
+     * @return false if the element has been rejected, true if it has been
+     * kept by the local queue of the calling thread (it can still be left out
+     * of the global top K)
+     */
+    public boolean add(final E e) {
+        if (e == null) {
+            throw new NullPointerException("e is null.");
+        }
+        E min = threshold.get();
+        if (min != null && forceCompare(e, min) < 1) {
+            return false;
+        }
+        FixedSizePriorityQueue<E> queue = local.get();
+        //The lock is only contended by asList
+        synchronized (queue) {
+            if (!queue.add(e)) {
+                return false;
+            }
+            if (queue.size() < maxSize) {
+                return true;
+            }
+            min = queue.peek();
+        }
+        raiseThreshold(min);
+        return true;
+    }
+
+    /**
+     * Offers all the elements of a collection
+     *
+     * @param c - The elements to be added
+     * @return true if at least one element has been kept
+     */
+    public boolean addAll(Collection<? extends E> c) {
+        if (c == null) {
+            throw new NullPointerException("c is null.");
+        }
+        boolean modified = false;
+        for (E e : c) {
+            if (add(e)) {
+                modified = true;
+            }
+        }
+        return modified;
+    }
+
+    private void raiseThreshold(E min) {
+        E current;
+        do {
+            current = threshold.get();
+            if (current != null && forceCompare(min, current) < 1) {
+                return;
+            }
+        } while (!threshold.compareAndSet(current, min));
+    }
+
+    @SuppressWarnings("unchecked")
+    private int forceCompare(E e1, E e2) {
+        if (this.comparator != null) {
+            return comparator.compare(e1, e2);
+        }
+        Comparable<? super E> c1 = (Comparable<? super E>) e1;
+        return c1.compareTo(e2);
+    }
+
+    /**
+     *
+     * @return the greatest element known to be out of the top K (null if
+     * none), elements not greater than it are rejected
+     */
+    public E threshold() {
+        return threshold.get();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Merges the local queues, it can run while other threads are adding
+     *
+     * @return Returns the global top K as a sorted
+     * {@link java.util.Collections#unmodifiableList(java.util.List)}, from
+     * high priority to low priority
+     */
+    public List<E> asList() {
+        FixedSizePriorityQueue<E> merged = comparator == null
+                ? new FixedSizePriorityQueue<>(maxSize)
+                : new FixedSizePriorityQueue<>(maxSize, comparator);
+        for (FixedSizePriorityQueue<E> queue : queues) {
+            synchronized (queue) {
+                for (Iterator<E> it = queue.unorderedIterator(); it.hasNext();) {
+                    merged.add(it.next());
+                }
+            }
+        }
+        return merged.asList();
+    }
+
+    /**
+     *
+     * @return the number of elements in the global top K
+     */
+    public int size() {
+        long size = 0;
+        for (FixedSizePriorityQueue<E> queue : queues) {
+            size += queue.size();
+        }
+        return (int) Math.min(size, maxSize);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Removes all the elements and drops the local queues, including the ones
+     * of terminated threads, must not run while other threads are adding
+     */
+    public void clear() {
+        local = newLocal();
+        queues.clear();
+        threshold.set(null);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return asList().iterator();
+    }
+}
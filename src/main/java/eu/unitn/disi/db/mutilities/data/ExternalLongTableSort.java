@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2012 Davide Mottin <mottin@disi.unitn.eu>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package eu.unitn.disi.db.mutilities.data;
+
+import eu.unitn.disi.db.mutilities.exceptions.ParseException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * External merge sort of tables of longs that do not fit in the heap. The
+ * rows are collected in sorted runs of at most {@link #getRunSize()} rows
+ * held in a {@link LongTable}, each run is spilled to a temporary
+ * {@link MappedLongTable} file and the runs are then merged with a k-way
+ * merge driven by a primitive heap. The heap only holds the run buffer: the
+ * runs are read through memory mappings, so a table many times larger than
+ * the heap can be sorted.
+ *
+ * <p>
+ * Rows with the same key keep their relative order across runs but not
+ * inside a run.
+ * </p>
+ */
+public class ExternalLongTableSort {
+
+    /**
+     * Default memory budget for the run buffer: 64MB
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+    /**
+     * Initial number of rows of the run buffer when the input size is unknown
+     */
+    private static final int INITIAL_RUN_ROWS = 1 << 12;
+
+    private final int columns;
+    private final int sortField;
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+    private int runSize = Integer.MAX_VALUE;
+    private File tempDirectory = null;
+
+    /**
+     *
+     * @param columns The number of columns of each row
+     * @param sortField The column used as key
+     */
+    public ExternalLongTableSort(int columns, int sortField) {
+        if (columns <= 0 || sortField < 0 || sortField >= columns) {
+            throw new IllegalArgumentException("Invalid columns " + columns + " or sort field " + sortField);
+        }
+        this.columns = columns;
+        this.sortField = sortField;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Sets the number of bytes used by the run buffer
+     *
+     * @param memoryBudget The budget in bytes, at least a row
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        if (memoryBudget < columns * Long.BYTES) {
+            throw new IllegalArgumentException("Memory budget " + memoryBudget + " is smaller than a row");
+        }
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     *
+     * @return the maximum number of rows of a run, further limited by the
+     * memory budget
+     */
+    public int getRunSize() {
+        return (int) Math.min(runSize, Math.min(memoryBudget / (columns * Long.BYTES), Integer.MAX_VALUE / columns));
+    }
+
+    /**
+     * Sets the maximum number of rows of a run
+     *
+     * @param runSize The number of rows
+     */
+    public void setRunSize(int runSize) {
+        if (runSize <= 0) {
+            throw new IllegalArgumentException("runSize = " + runSize + "; expected a positive integer.");
+        }
+        this.runSize = runSize;
+    }
+
+    /**
+     * Sets where the runs are spilled
+     *
+     * @param tempDirectory The directory, null for the system default
+     */
+    public void setTempDirectory(String tempDirectory) {
+        this.tempDirectory = tempDirectory == null ? null : new File(tempDirectory);
+    }
+
+    /**
+     * Sorts a table file
+     *
+     * @param inputFile A table file written by {@link MappedLongTable}
+     * @param outputFile The sorted table file, overwritten if it exists
+     * @throws IOException If some file cannot be read or written
+     * @throws ParseException If the input is not a table file
+     */
+    public void sort(String inputFile, String outputFile) throws IOException, ParseException {
+        try (MappedLongTable input = MappedLongTable.open(inputFile)) {
+            if (input.columns() != columns) {
+                throw new ParseException("Table file %s has %d columns, expected %d", inputFile, input.columns(), columns);
+            }
+            long[] row = new long[columns];
+            List<File> runs = new ArrayList<>();
+            try {
+                LongTable buffer = new LongTable(columns, (int) Math.min(getRunSize(), input.size()));
+                for (long i = 0; i < input.size(); i++) {
+                    buffer.addRow(input.getRow(i, row));
+                    spillIfFull(buffer, runs, false);
+                }
+                finish(buffer, runs, outputFile);
+            } finally {
+                deleteRuns(runs);
+            }
+        }
+    }
+
+    /**
+     * Sorts the rows returned by an iterator
+     *
+     * <p>
+     * The number of rows is not known in advance, so the run buffer starts
+     * small and doubles while the old and the new buffer together, which
+     * coexist during the copy, fit in {@link #getRunSize()} rows; once it
+     * cannot grow further, a full buffer is spilled as a run. The memory
+     * budget is never exceeded, at the price of runs of at least a third of
+     * the run size.
+     * </p>
+     *
+     * @param rows The rows, each one {@code columns} long, the arrays can be
+     * reused by the iterator
+     * @param outputFile The sorted table file, overwritten if it exists
+     * @throws IOException If some file cannot be read or written
+     */
+    public void sort(Iterator<long[]> rows, String outputFile) throws IOException {
+        List<File> runs = new ArrayList<>();
+        try {
+            int runSize = getRunSize();
+            int capacity = Math.min(runSize, INITIAL_RUN_ROWS);
+            LongTable buffer = new LongTable(columns, capacity);
+            while (rows.hasNext()) {
+                if (buffer.size() == capacity) {
+                    if ((long) capacity * 3 <= runSize) {
+                        capacity *= 2;
+                        buffer.ensureCapacity(capacity);
+                    } else {
+                        spillIfFull(buffer, runs, true);
+                    }
+                }
+                buffer.addRow(rows.next());
+            }
+            finish(buffer, runs, outputFile);
+        } catch (ParseException ex) {
+            throw new IOException("Cannot read back a sorted run", ex);
+        } finally {
+            deleteRuns(runs);
+        }
+    }
+
+    private void spillIfFull(LongTable buffer, List<File> runs, boolean force) throws IOException {
+        if (buffer.size() >= getRunSize() || force && !buffer.isEmpty()) {
+            File run = File.createTempFile("run", ".ltb", tempDirectory);
+            runs.add(run);
+            buffer.sort(sortField);
+            MappedLongTable.write(buffer, sortField, run.getPath());
+            buffer.clear();
+        }
+    }
+
+    private void finish(LongTable buffer, List<File> runs, String outputFile) throws IOException, ParseException {
+        if (runs.isEmpty()) {
+            //Everything fits in a single run, no need to spill
+            buffer.sort(sortField);
+            MappedLongTable.write(buffer, sortField, outputFile);
+            return;
+        }
+        spillIfFull(buffer, runs, true);
+        merge(runs, outputFile);
+    }
+
+    private static void deleteRuns(List<File> runs) {
+        for (File run : runs) {
+            run.delete();
+        }
+    }
+
+    /**
+     * K-way merge of the runs, the heap holds run indexes ordered by their
+     * current key and then by run (so that equal keys keep the run order)
+     */
+    private void merge(List<File> runFiles, String outputFile) throws IOException, ParseException {
+        int k = runFiles.size();
+        MappedLongTable[] runs = new MappedLongTable[k];
+        long[] positions = new long[k];
+        long[] keys = new long[k];
+        int[] heap = new int[k];
+        int size = 0;
+        long[] row = new long[columns];
+
+        try {
+            for (int i = 0; i < k; i++) {
+                runs[i] = MappedLongTable.open(runFiles.get(i).getPath());
+                if (runs[i].size() > 0) {
+                    keys[i] = runs[i].get(0, sortField);
+                    heap[size] = i;
+                    siftUp(heap, keys, size++);
+                }
+            }
+            try (MappedLongTable.Writer writer = new MappedLongTable.Writer(outputFile, columns, sortField)) {
+                try {
+                    while (size > 0) {
+                        int run = heap[0];
+                        writer.writeRow(runs[run].getRow(positions[run]++, row));
+                        if (positions[run] < runs[run].size()) {
+                            keys[run] = runs[run].get(positions[run], sortField);
+                        } else {
+                            heap[0] = heap[--size];
+                        }
+                        siftDown(heap, keys, 0, size);
+                    }
+                } catch (IOException | RuntimeException ex) {
+                    writer.abort();
+                    throw ex;
+                }
+            }
+        } finally {
+            for (MappedLongTable run : runs) {
+                if (run != null) {
+                    run.close();
+                }
+            }
+        }
+    }
+
+    private static boolean less(int r1, int r2, long[] keys) {
+        return keys[r1] < keys[r2] || keys[r1] == keys[r2] && r1 < r2;
+    }
+
+    private static void siftUp(int[] heap, long[] keys, int node) {
+        int run = heap[node];
+        while (node > 0) {
+            int parent = (node - 1) >>> 1;
+            if (!less(run, heap[parent], keys)) {
+                break;
+            }
+            heap[node] = heap[parent];
+            node = parent;
+        }
+        heap[node] = run;
+    }
+
+    private static void siftDown(int[] heap, long[] keys, int node, int size) {
+        if (size == 0) {
+            return;
+        }
+        int run = heap[node];
+        int child;
+        while ((child = 2 * node + 1) < size) {
+            if (child + 1 < size && less(heap[child + 1], heap[child], keys)) {
+                child++;
+            }
+            if (!less(heap[child], run, keys)) {
+                break;
+            }
+            heap[node] = heap[child];
+            node = child;
+        }
+        heap[node] = run;
+    }
+}
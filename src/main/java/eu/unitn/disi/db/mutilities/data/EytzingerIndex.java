@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2012 Davide Mottin <mottin@disi.unitn.eu>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package eu.unitn.disi.db.mutilities.data;
+
+/**
+ * A read-only search index over the key column of a sorted table. The keys
+ * are copied in a primitive array in Eytzinger (BFS) order: the children of
+ * node {@code k} are {@code 2k} and {@code 2k + 1}, so the first levels of
+ * the tree share a few cache lines and each step of the search reads a
+ * location that only depends on the previous comparison. The loop has no
+ * data-dependent branch and a search costs far fewer cache misses than
+ * {@link CollectionUtilities#binaryTableSearch(long[][], int, long)} which
+ * dereferences a different row at every step.
+ *
+ * <p>
+ * The index returns row positions in the original table, which must not be
+ * reordered after the index is built. It takes 12 bytes per row and holds at
+ * most {@link #MAX_SIZE} rows.
+ * </p>
+ */
+public final class EytzingerIndex {
+
+    /**
+     * Maximum number of rows
+     */
+    public static final int MAX_SIZE = (1 << 30) - 1;
+
+    /**
+     * Keys in Eytzinger order, position 0 is unused
+     */
+    private final long[] tree;
+    /**
+     * Row of the table holding the key in the same position of the tree
+     */
+    private final int[] rows;
+    private final int size;
+
+    /**
+     * Builds the index over a table sorted on {@code searchField}
+     *
+     * @param table The table sorted on {@code searchField}
+     * @param searchField The column the table is sorted on
+     * @throws IllegalArgumentException If the table is not sorted
+     */
+    public EytzingerIndex(long[][] table, int searchField) {
+        long[] keys = new long[table.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = table[i][searchField];
+        }
+        this.size = checkSize(keys.length);
+        this.tree = new long[size + 1];
+        this.rows = new int[size + 1];
+        build(keys);
+    }
+
+    /**
+     * Builds the index over a table sorted on {@code searchField}
+     *
+     * @param table The table sorted on {@code searchField}
+     * @param searchField The column the table is sorted on
+     * @throws IllegalArgumentException If the table is not sorted
+     */
+    public EytzingerIndex(LongTable table, int searchField) {
+        long[] keys = new long[table.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = table.get(i, searchField);
+        }
+        this.size = checkSize(keys.length);
+        this.tree = new long[size + 1];
+        this.rows = new int[size + 1];
+        build(keys);
+    }
+
+    private static int checkSize(int size) {
+        //Node indexes must not overflow while descending the tree
+        if (size > MAX_SIZE) {
+            throw new IllegalArgumentException("Cannot index " + size + " rows, at most " + MAX_SIZE);
+        }
+        return size;
+    }
+
+    private void build(long[] keys) {
+        for (int i = 1; i < keys.length; i++) {
+            if (keys[i] < keys[i - 1]) {
+                throw new IllegalArgumentException("The table is not sorted at row " + i);
+            }
+        }
+        build(keys, 0, 1);
+    }
+
+    /**
+     * In-order visit of the implicit tree, the recursion is as deep as the
+     * tree
+     */
+    private int build(long[] keys, int i, int k) {
+        if (k <= size) {
+            i = build(keys, i, 2 * k);
+            tree[k] = keys[i];
+            rows[k] = i++;
+            i = build(keys, i, 2 * k + 1);
+        }
+        return i;
+    }
+
+    /**
+     *
+     * @return the number of indexed rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Same contract of
+     * {@link CollectionUtilities#binaryTableSearch(long[][], int, long)}, if
+     * the key occurs several times the first occurrence is returned
+     *
+     * @param key The key to be searched
+     * @return the index of a row containing the key, if any, otherwise
+     * {@code -(insertion point) - 1}
+     */
+    public int search(long key) {
+        int k = lowerBoundNode(key);
+        if (k != 0 && tree[k] == key) {
+            return rows[k];
+        }
+        return -((k == 0 ? size : rows[k]) + 1);
+    }
+
+    /**
+     *
+     * @param key The key to be searched
+     * @return the first row whose key is greater or equal than {@code key}
+     */
+    public int lowerBound(long key) {
+        int k = lowerBoundNode(key);
+        return k == 0 ? size : rows[k];
+    }
+
+    /**
+     *
+     * @param key The key to be searched
+     * @return the first row whose key is greater than {@code key}
+     */
+    public int upperBound(long key) {
+        int k = 1;
+        while (k <= size) {
+            k = (k << 1) | (tree[k] <= key ? 1 : 0);
+        }
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        return k == 0 ? size : rows[k];
+    }
+
+    /**
+     * Descends the tree turning right whenever the node is smaller than the
+     * key, the lower bound is the last node where the search turned left:
+     * dropping the trailing right turns (ones) and the last left turn gives
+     * its position.
+     *
+     * @return the node of the lower bound, 0 if all the keys are smaller
+     */
+    private int lowerBoundNode(long key) {
+        int k = 1;
+        while (k <= size) {
+            k = (k << 1) | (tree[k] < key ? 1 : 0);
+        }
+        return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+    }
+}
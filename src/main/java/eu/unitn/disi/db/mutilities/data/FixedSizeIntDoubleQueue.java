@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2012 Davide Mottin <mottin@disi.unitn.eu>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package eu.unitn.disi.db.mutilities.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link FixedSizePriorityQueue} specialized for (int id, double score)
+ * pairs: it keeps the TOP K ids with the greatest scores in a min-heap of
+ * parallel primitive arrays, so {@link #offer(int, double)} neither boxes nor
+ * allocates and compares scores directly instead of going through a
+ * {@link java.util.Comparator}.
+ *
+ * <p>
+ * As in {@link FixedSizePriorityQueue#add(Object)}, when the queue is full a
+ * candidate is kept only if its score is strictly greater than
+ * {@link #threshold()}.
+ * </p>
+ */
+public class FixedSizeIntDoubleQueue {
+
+    private final int[] ids;
+    private final double[] scores;
+    private int size;
+
+    /**
+     *
+     * @param maxSize - The maximum size the queue can reach, must be a positive
+     * integer.
+     */
+    public FixedSizeIntDoubleQueue(final int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize = " + maxSize + "; expected a positive integer.");
+        }
+        this.ids = new int[maxSize];
+        this.scores = new double[maxSize];
+    }
+
+    /**
+     * Adds a pair to the queue, if the queue is full it replaces the pair
+     * with the lowest score provided that {@code score} is greater
+     *
+     * @param id The id
+     * @param score The score of the id, must not be NaN
+     * @return true if the pair has been added
+     */
+    public boolean offer(int id, double score) {
+        if (score != score) {
+            throw new IllegalArgumentException("Score of " + id + " is NaN");
+        }
+        if (size < ids.length) {
+            siftUp(size++, id, score);
+            return true;
+        }
+        if (score <= scores[0]) {
+            return false;
+        }
+        siftDown(0, id, score);
+        return true;
+    }
+
+    /**
+     *
+     * @return the score a candidate must exceed to be added,
+     * {@link Double#NEGATIVE_INFINITY} while the queue is not full
+     */
+    public double threshold() {
+        return size < ids.length ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    /**
+     *
+     * @return the id with the lowest score
+     * @throws NoSuchElementException If the queue is empty
+     */
+    public int peekId() {
+        checkNotEmpty();
+        return ids[0];
+    }
+
+    /**
+     *
+     * @return the lowest score
+     * @throws NoSuchElementException If the queue is empty
+     */
+    public double peekScore() {
+        checkNotEmpty();
+        return scores[0];
+    }
+
+    /**
+     * Removes the pair with the lowest score
+     *
+     * @return the removed id
+     * @throws NoSuchElementException If the queue is empty
+     */
+    public int poll() {
+        checkNotEmpty();
+        int id = ids[0];
+        if (--size > 0) {
+            siftDown(0, ids[size], scores[size]);
+        }
+        return id;
+    }
+
+    /**
+     * Empties the queue into the arrays, sorted from the highest to the
+     * lowest score
+     *
+     * @param idsDest The ids, at least {@link #size()} long
+     * @param scoresDest The scores of the ids, at least {@link #size()} long,
+     * can be null
+     * @return the number of pairs copied
+     */
+    public int drainSortedTo(int[] idsDest, double[] scoresDest) {
+        int n = size;
+        if (idsDest.length < n || scoresDest != null && scoresDest.length < n) {
+            throw new IllegalArgumentException("Destination shorter than " + n + " elements");
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            if (scoresDest != null) {
+                scoresDest[i] = scores[0];
+            }
+            idsDest[i] = poll();
+        }
+        return n;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getMaxSize() {
+        return ids.length;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Writes the queue as {@code maxSize}, size and the (id, score) pairs in
+     * heap order, {@code 4 + 4 + size * 12} bytes
+     *
+     * @param out The output
+     * @throws IOException If the output cannot be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(ids.length);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(ids[i]);
+            out.writeDouble(scores[i]);
+        }
+    }
+
+    /**
+     * Reads a queue written by {@link #writeTo(DataOutput)}
+     *
+     * @param in The input
+     * @return the queue
+     * @throws IOException If the input cannot be read or it is not a valid
+     * queue
+     */
+    public static FixedSizeIntDoubleQueue readFrom(DataInput in) throws IOException {
+        int maxSize = in.readInt();
+        int size = in.readInt();
+        if (maxSize <= 0 || size < 0 || size > maxSize) {
+            throw new IOException("Invalid queue of " + size + " elements out of " + maxSize);
+        }
+        FixedSizeIntDoubleQueue queue = new FixedSizeIntDoubleQueue(maxSize);
+        for (int i = 0; i < size; i++) {
+            int id = in.readInt();
+            double score = in.readDouble();
+            if (score != score) {
+                throw new IOException("Score of " + id + " is NaN");
+            }
+            //Pairs in heap order are appended without moving
+            queue.siftUp(queue.size++, id, score);
+        }
+        return queue;
+    }
+
+    private void checkNotEmpty() {
+        if (size == 0) {
+            throw new NoSuchElementException("The queue is empty");
+        }
+    }
+
+    private void siftUp(int node, int id, double score) {
+        while (node > 0) {
+            int parent = (node - 1) >>> 1;
+            if (scores[parent] <= score) {
+                break;
+            }
+            ids[node] = ids[parent];
+            scores[node] = scores[parent];
+            node = parent;
+        }
+        ids[node] = id;
+        scores[node] = score;
+    }
+
+    private void siftDown(int node, int id, double score) {
+        int child;
+        while ((child = 2 * node + 1) < size) {
+            if (child + 1 < size && scores[child + 1] < scores[child]) {
+                child++;
+            }
+            if (score <= scores[child]) {
+                break;
+            }
+            ids[node] = ids[child];
+            scores[node] = scores[child];
+            node = child;
+        }
+        ids[node] = id;
+        scores[node] = score;
+    }
+}
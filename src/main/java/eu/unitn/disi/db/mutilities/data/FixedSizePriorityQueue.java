@@ -5,8 +5,14 @@
  */
 package eu.unitn.disi.db.mutilities.data;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.AbstractQueue;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -33,12 +39,18 @@ import java.util.PriorityQueue;
  * @author Matteo Lissandrini <ml@disi.unitn.eu>
  * @param <E>
  */
-public class FixedSizePriorityQueue<E> extends AbstractQueue<E> implements Iterable<E> {
+public class FixedSizePriorityQueue<E> extends AbstractQueue<E> implements Iterable<E>, Serializable {
 
-    private final PriorityQueue<E> queue;
+    private static final long serialVersionUID = 1L;
+    private transient PriorityQueue<E> queue;
     /* backing data structure */
     private final Comparator<? super E> comparator;
     private final int maxSize;
+    /* addAll selects the top elements in bulk when the input is that many times maxSize */
+    private static final int BULK_SELECT_RATIO = 4;
+    private static final int INSERTION_SELECT_THRESHOLD = 16;
+    /* sorted view returned by asList, null when the queue has been modified */
+    private transient List<E> sorted;
 
     /**
      * Constructs a {@link FixedSizePriorityQueue} with the specified
@@ -106,9 +118,21 @@ public class FixedSizePriorityQueue<E> extends AbstractQueue<E> implements Itera
                 queue.poll();
             }
         }
+        sorted = null;
         return queue.add(e);
     }
     
+    /**
+     * Adds all the elements of a collection, as if each one were added with
+     * {@link #add(Object)}. When {@code c} is much larger than
+     * {@code maxSize}, the TOP K elements are selected in expected linear time
+     * with a buffered introselect, instead of sifting the heap for every
+     * element; in that case, among the elements equal to the lowest kept one,
+     * which ones are kept is unspecified.
+     *
+     * @param c - The elements to be added
+     * @return true if the queue has been modified
+     */
     @Override
     public boolean addAll(Collection<? extends E> c){
         if (c == null) {
@@ -119,9 +143,12 @@ public class FixedSizePriorityQueue<E> extends AbstractQueue<E> implements Itera
         }
         
         if(this.queue.size() + c.size() <= maxSize){
+            sorted = null;
             return this.queue.addAll(c);
         }
-        
+        if (c.size() >= BULK_SELECT_RATIO * maxSize) {
+            return selectAll(c);
+        }
         
         boolean modified = false;
         for (E e : c){
@@ -132,6 +159,125 @@ public class FixedSizePriorityQueue<E> extends AbstractQueue<E> implements Itera
         return modified;
     }
     
+    /**
+     * Bulk path of {@link #addAll(Collection)}: the queue and the elements
+     * greater than the current threshold are appended to a buffer of
+     * {@code 2 * maxSize} elements. Whenever the buffer is full the TOP K are
+     * moved to its front with an introselect, and the lowest of them becomes
+     * the new threshold. Each element costs one comparison if it is rejected
+     * and amortized constant time if it is accepted, instead of a heap sift.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean selectAll(Collection<? extends E> c) {
+        Object[] buffer = new Object[(int) Math.min(2L * maxSize, (long) queue.size() + c.size())];
+        int n = 0;
+        for (Iterator<E> it = queue.iterator(); it.hasNext();) {
+            buffer[n++] = it.next();
+        }
+        E min = n < maxSize ? null : queue.peek();
+        boolean modified = false;
+        for (E e : c) {
+            if (e == null) {
+                throw new NullPointerException("e is null.");
+            }
+            if (min == null || forceCompare(e, min) > 0) {
+                if (n == buffer.length) {
+                    n = selectTop(buffer, n);
+                    min = (E) buffer[0];
+                    if (forceCompare(e, min) < 1) {
+                        continue;
+                    }
+                }
+                buffer[n++] = e;
+                modified = true;
+            }
+        }
+        if (modified) {
+            n = selectTop(buffer, n);
+            queue.clear();
+            for (int i = 0; i < n; i++) {
+                queue.add((E) buffer[i]);
+            }
+            sorted = null;
+        }
+        return modified;
+    }
+
+    /**
+     * Moves the {@code maxSize} greatest elements of {@code a[0, n)} to the
+     * front, the lowest of them in position 0
+     *
+     * @return the number of elements left in the front
+     */
+    private int selectTop(Object[] a, int n) {
+        if (n <= maxSize) {
+            return n;
+        }
+        int from = n - maxSize;
+        select(a, 0, n, from, 2 * (32 - Integer.numberOfLeadingZeros(n)));
+        System.arraycopy(a, from, a, 0, maxSize);
+        return maxSize;
+    }
+
+    /**
+     * Rearranges {@code a[from, to)} so that {@code a[k]} is the element
+     * that would be there if the range were sorted, with no greater element
+     * before and no smaller element after. Falls back to sorting the range
+     * when the partitions are too unbalanced.
+     */
+    @SuppressWarnings("unchecked")
+    private void select(Object[] a, int from, int to, int k, int depth) {
+        while (to - from > INSERTION_SELECT_THRESHOLD) {
+            if (depth-- == 0) {
+                Arrays.sort(a, from, to, (x, y) -> forceCompare((E) x, (E) y));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            //Median of three moved to mid
+            if (forceCompare((E) a[mid], (E) a[from]) < 0) {
+                swap(a, mid, from);
+            }
+            if (forceCompare((E) a[to - 1], (E) a[mid]) < 0) {
+                swap(a, to - 1, mid);
+                if (forceCompare((E) a[mid], (E) a[from]) < 0) {
+                    swap(a, mid, from);
+                }
+            }
+            E pivot = (E) a[mid];
+            int i = from, j = to - 1;
+            while (i <= j) {
+                while (forceCompare((E) a[i], pivot) < 0) {
+                    i++;
+                }
+                while (forceCompare((E) a[j], pivot) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(a, i++, j--);
+                }
+            }
+            //a[from, j] <= pivot <= a[i, to) and a(j, i) == pivot
+            if (k <= j) {
+                to = j + 1;
+            } else if (k >= i) {
+                from = i;
+            } else {
+                return;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && forceCompare((E) a[j - 1], (E) a[j]) > 0; j--) {
+                swap(a, j, j - 1);
+            }
+        }
+    }
+
+    private static void swap(Object[] a, int i, int j) {
+        Object tmp = a[i];
+        a[i] = a[j];
+        a[j] = tmp;
+    }
+
     @SuppressWarnings("unchecked")
     private int forceCompare(E e1, E e2) {
         if (this.comparator != null) {
@@ -178,23 +324,88 @@ public class FixedSizePriorityQueue<E> extends AbstractQueue<E> implements Itera
     /**
      * @return Returns a sorted view of the queue as a
      * {@link Collections#unmodifiableList(java.util.List)} unmodifiableList.
-     * This is sorted from high priority to low priority
+     * This is sorted from high priority to low priority. The view is cached
+     * until the queue is modified, and it does not reflect later changes.
      */
     public List<E> asList() {
-        List<E> mutableList = new ArrayList<>(queue);
-        if(this.comparator != null){
-            Collections.sort(mutableList, comparator.reversed());
-        } else {
-            Collections.sort(mutableList, Collections.reverseOrder());
+        if (sorted == null) {
+            List<E> mutableList = new ArrayList<>(queue);
+            if(this.comparator != null){
+                Collections.sort(mutableList, comparator.reversed());
+            } else {
+                Collections.sort(mutableList, Collections.reverseOrder());
+            }
+            sorted = Collections.unmodifiableList(mutableList);
         }
-        return Collections.unmodifiableList(mutableList);
+        return sorted;
     }
 
+    /**
+     * Iterates from high priority to low priority over {@link #asList()}, so
+     * only the first iteration after a modification sorts the queue
+     *
+     * @return an iterator over the sorted view
+     */
     @Override
     public Iterator<E> iterator() {
         return this.asList().iterator();
     }
 
+    /**
+     * Iterates the elements in heap order, without copying or sorting them
+     *
+     * @return an iterator in no particular order
+     */
+    public Iterator<E> unorderedIterator() {
+        final Iterator<E> it = queue.iterator();
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return it.next();
+            }
+
+            @Override
+            public void remove() {
+                it.remove();
+                sorted = null;
+            }
+        };
+    }
+
+    /**
+     * Removes all the elements from the queue and adds them to {@code c} from
+     * low priority to high priority, by polling the heap
+     *
+     * @param c - The collection receiving the elements
+     * @return the number of elements moved
+     */
+    public int drainSortedTo(Collection<? super E> c) {
+        if (c == null) {
+            throw new NullPointerException("c is null.");
+        }
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int n = 0;
+        E e;
+        while ((e = this.poll()) != null) {
+            c.add(e);
+            n++;
+        }
+        return n;
+    }
+
+    @Override
+    public void clear() {
+        sorted = null;
+        this.queue.clear();
+    }
+
     @Override
     public boolean offer(E e) {
         this.add(e);
@@ -203,10 +414,80 @@ public class FixedSizePriorityQueue<E> extends AbstractQueue<E> implements Itera
 
     @Override
     public E poll() {
+        if (!queue.isEmpty()) {
+            sorted = null;
+        }
         return this.queue.poll();
  
     }
  
+    /**
+     * Merges several queues into their {@code k} greatest elements. The
+     * elements are offered to a bounded heap of {@code k} elements, so no
+     * queue is sorted or copied: an element not greater than the current
+     * k-th greatest costs one comparison, the others O(log k). A queue whose
+     * sorted view is already cached is read in order and abandoned at its
+     * first rejected element. All the queues must use the same ordering, the
+     * one of the first queue is used; ties go to the earlier queues.
+     *
+     * @param <E> The type of the elements
+     * @param queues The queues to be merged, they are not modified
+     * @param k The number of elements to return
+     * @return the {@code k} greatest elements, sorted from high priority to
+     * low priority
+     */
+    public static <E> List<E> merge(Collection<? extends FixedSizePriorityQueue<E>> queues, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k = " + k + "; expected a positive integer.");
+        }
+        FixedSizePriorityQueue<E> merged = null;
+        for (FixedSizePriorityQueue<E> q : queues) {
+            if (merged == null) {
+                merged = q.comparator == null
+                        ? new FixedSizePriorityQueue<>(k)
+                        : new FixedSizePriorityQueue<>(k, q.comparator);
+            }
+            if (q.sorted != null) {
+                for (E e : q.sorted) {
+                    if (!merged.add(e) && merged.size() == k) {
+                        break;
+                    }
+                }
+            } else {
+                for (Iterator<E> it = q.queue.iterator(); it.hasNext();) {
+                    merged.add(it.next());
+                }
+            }
+        }
+        return merged == null ? new ArrayList<>() : new ArrayList<>(merged.asList());
+    }
+
+    /**
+     * Writes {@code maxSize}, the comparator (which must be serializable, if
+     * any), the size and the elements in heap order, so that reading them
+     * back rebuilds the heap without sifting
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(queue.size());
+        for (E e : queue) {
+            out.writeObject(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int size = in.readInt();
+        if (maxSize <= 0 || size < 0 || size > maxSize) {
+            throw new InvalidObjectException("Invalid queue of " + size + " elements out of " + maxSize);
+        }
+        queue = new PriorityQueue<>(Math.max(1, size), comparator);
+        for (int i = 0; i < size; i++) {
+            queue.add((E) in.readObject());
+        }
+    }
+
     public static void main(String[] args){
         double[] nums = new double[]{ 1.0, 2.0, 3.0, 3.1, 2.1, 1.1 };
         FixedSizePriorityQueue<Double> nn  = new FixedSizePriorityQueue<>(4);
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2012 Davide Mottin <mottin@disi.unitn.eu>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package eu.unitn.disi.db.mutilities.data;
+
+/**
+ * Hash functions shared by the sketches and hash based structures of this
+ * package
+ */
+final class Hashing {
+
+    private Hashing() {
+    }
+
+    /**
+     * The 64 bits finalizer of MurmurHash3, a bijection that spreads every
+     * input bit on all the output bits
+     *
+     * @param z The value to be mixed
+     * @return the mixed value
+     */
+    static long mix64(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * @return a 64 bits hash of the object built from its hash code
+     */
+    static long hash(Object o) {
+        return mix64(o == null ? 0 : o.hashCode());
+    }
+}
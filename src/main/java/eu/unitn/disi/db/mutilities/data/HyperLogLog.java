@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2012 Davide Mottin <mottin@disi.unitn.eu>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package eu.unitn.disi.db.mutilities.data;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+/**
+ * A HyperLogLog sketch estimating the number of distinct elements of a set in
+ * {@code 2^precision} bytes, with a standard error of about
+ * {@code 1.04 / sqrt(2^precision)} (1.6% for the default precision 12).
+ * Sketches of the same precision merge into the sketch of the union, so the
+ * union and, by inclusion-exclusion, the intersection and the Jaccard
+ * similarity of two sets can be estimated. The intersection estimate has the
+ * absolute error of the union, it is poor for small overlaps of large sets:
+ * {@link MinHash} is more accurate there.
+ *
+ * <p>
+ * Elements are hashed as in {@link MinHash}.
+ * </p>
+ */
+public class HyperLogLog implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    public static final int DEFAULT_PRECISION = 12;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     *
+     * @param precision The number of bits selecting a register, from 4 to 18
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("precision = " + precision + "; expected a value in [4, 18].");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public static HyperLogLog of(Collection<?> c) {
+        HyperLogLog hll = new HyperLogLog();
+        for (Object o : c) {
+            hll.add(o);
+        }
+        return hll;
+    }
+
+    public static HyperLogLog of(int[] values) {
+        HyperLogLog hll = new HyperLogLog();
+        for (int value : values) {
+            hll.add(value);
+        }
+        return hll;
+    }
+
+    public static HyperLogLog of(long[] values) {
+        HyperLogLog hll = new HyperLogLog();
+        for (long value : values) {
+            hll.add(value);
+        }
+        return hll;
+    }
+
+    public void add(Object o) {
+        addHash(Hashing.hash(o));
+    }
+
+    public void add(int value) {
+        addHash(Hashing.mix64(value));
+    }
+
+    public void add(long value) {
+        addHash(Hashing.mix64((int) (value ^ (value >>> 32))));
+    }
+
+    private void addHash(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        //The marker bit bounds the rank when the remaining bits are all zero
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * Turns this sketch into the sketch of the union of the two sets
+     *
+     * @param other A sketch with the same precision
+     */
+    public void merge(HyperLogLog other) {
+        checkCompatible(other);
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    private void checkCompatible(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Sketches with different precision " + precision + " and " + other.precision);
+        }
+    }
+
+    /**
+     *
+     * @return the estimated number of distinct elements
+     */
+    public double estimate() {
+        return estimate(registers, null);
+    }
+
+    private double estimate(byte[] r1, byte[] r2) {
+        int m = r1.length;
+        double sum = 0;
+        int zeros = 0;
+        for (int i = 0; i < m; i++) {
+            int register = r2 == null ? r1[i] : Math.max(r1[i], r2[i]);
+            sum += Double.longBitsToDouble((1023L - register) << 52); // 2^-register
+            zeros += register == 0 ? 1 : 0;
+        }
+        double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            //Small range correction: linear counting
+            estimate = m * Math.log(m / (double) zeros);
+        }
+        return estimate;
+    }
+
+    /**
+     *
+     * @param other A sketch with the same precision
+     * @return the estimated size of the union of the two sets
+     */
+    public double estimateUnion(HyperLogLog other) {
+        checkCompatible(other);
+        return estimate(registers, other.registers);
+    }
+
+    /**
+     *
+     * @param other A sketch with the same precision
+     * @return the estimated size of the intersection of the two sets
+     */
+    public double estimateIntersection(HyperLogLog other) {
+        return Math.max(0, estimate() + other.estimate() - estimateUnion(other));
+    }
+
+    /**
+     *
+     * @param other A sketch with the same precision
+     * @return the estimated Jaccard similarity of the two sets
+     */
+    public double jaccard(HyperLogLog other) {
+        double union = estimateUnion(other);
+        return union == 0 ? 0 : Math.min(1, estimateIntersection(other) / union);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+}
@@ -0,0 +1,784 @@
+/*
+ * Copyright (C) 2012 Davide Mottin <mottin@disi.unitn.eu>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package eu.unitn.disi.db.mutilities.data;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A compressed bitmap set of integers in the style of Roaring bitmaps. The
+ * values are partitioned by their 16 high bits, each partition holds the
+ * 16 low bits in the most compact of three containers: a sorted array (up to
+ * {@value #ARRAY_MAX} values), a 8KB bitmap, or a list of runs (only after
+ * {@link #runOptimize()}). Dense sets of ids take about 1 bit per value
+ * instead of the ~50 bytes of a boxed {@code HashSet} entry.
+ *
+ * <p>
+ * It implements {@code Set<Integer>} for compatibility, the primitive
+ * {@link #add(int)}, {@link #contains(int)} and the set operations
+ * {@link #and(IntBitmapSet)}, {@link #or(IntBitmapSet)},
+ * {@link #andNot(IntBitmapSet)} and their cardinality counterparts do not
+ * box. {@link CollectionUtilities#intersect(java.util.Set, java.util.Set)},
+ * {@link CollectionUtilities#unionSize(java.util.Set, java.util.Set)} and
+ * {@link CollectionUtilities#differenceSize(java.util.Set, java.util.Set)}
+ * use them when both sets are bitmaps. The iteration order is the unsigned
+ * order of the values (negative values last). The set is not thread-safe.
+ * </p>
+ */
+public class IntBitmapSet extends AbstractSet<Integer> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    /**
+     * Maximum number of values of an array container
+     */
+    static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+
+    private char[] keys;
+    private Container[] containers;
+    private int containerCount;
+    private int cardinality;
+
+    public IntBitmapSet() {
+        this.keys = new char[4];
+        this.containers = new Container[4];
+    }
+
+    /**
+     * Creates a set with the values of an array
+     *
+     * @param values The values
+     */
+    public IntBitmapSet(int... values) {
+        this();
+        for (int value : values) {
+            add(value);
+        }
+    }
+
+    private static char high(int x) {
+        return (char) (x >>> 16);
+    }
+
+    private static char low(int x) {
+        return (char) x;
+    }
+
+    private int containerIndex(char key) {
+        return Arrays.binarySearch(keys, 0, containerCount, key);
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (containerCount == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * containerCount);
+            containers = Arrays.copyOf(containers, 2 * containerCount);
+        }
+        System.arraycopy(keys, index, keys, index + 1, containerCount - index);
+        System.arraycopy(containers, index, containers, index + 1, containerCount - index);
+        keys[index] = key;
+        containers[index] = container;
+        containerCount++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, containerCount - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, containerCount - index - 1);
+        containers[--containerCount] = null;
+    }
+
+    /**
+     * Appends a non empty container with a key larger than the last one
+     */
+    private void append(char key, Container container) {
+        if (container != null && container.cardinality() > 0) {
+            insertContainer(containerCount, key, container);
+            cardinality += container.cardinality();
+        }
+    }
+
+    public boolean add(int x) {
+        char key = high(x);
+        int i = containerIndex(key);
+        if (i < 0) {
+            ArrayContainer container = new ArrayContainer(4);
+            container.add(low(x));
+            insertContainer(-i - 1, key, container);
+            cardinality++;
+            return true;
+        }
+        int before = containers[i].cardinality();
+        containers[i] = containers[i].add(low(x));
+        if (containers[i].cardinality() > before) {
+            cardinality++;
+            return true;
+        }
+        return false;
+    }
+
+    public boolean contains(int x) {
+        int i = containerIndex(high(x));
+        return i >= 0 && containers[i].contains(low(x));
+    }
+
+    public boolean remove(int x) {
+        int i = containerIndex(high(x));
+        if (i < 0) {
+            return false;
+        }
+        int before = containers[i].cardinality();
+        containers[i] = containers[i].remove(low(x));
+        if (containers[i].cardinality() == before) {
+            return false;
+        }
+        cardinality--;
+        if (containers[i].cardinality() == 0) {
+            removeContainer(i);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean add(Integer e) {
+        return add(e.intValue());
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && contains(((Integer) o).intValue());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Integer && remove(((Integer) o).intValue());
+    }
+
+    @Override
+    public int size() {
+        return cardinality;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(containers, 0, containerCount, null);
+        containerCount = 0;
+        cardinality = 0;
+    }
+
+    /**
+     * Converts the containers made of few long runs of consecutive values
+     * into run containers when it saves memory
+     */
+    public void runOptimize() {
+        for (int i = 0; i < containerCount; i++) {
+            containers[i] = containers[i].runOptimize();
+        }
+    }
+
+    /**
+     *
+     * @param other
+     * @return a new set with the values in both sets
+     */
+    public IntBitmapSet and(IntBitmapSet other) {
+        IntBitmapSet result = new IntBitmapSet();
+        for (int i = 0, j = 0; i < containerCount && j < other.containerCount;) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], and(containers[i++], other.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     *
+     * @param other
+     * @return a new set with the values in any of the sets
+     */
+    public IntBitmapSet or(IntBitmapSet other) {
+        IntBitmapSet result = new IntBitmapSet();
+        int i = 0, j = 0;
+        while (i < containerCount || j < other.containerCount) {
+            if (j == other.containerCount || i < containerCount && keys[i] < other.keys[j]) {
+                result.append(keys[i], containers[i++].copy());
+            } else if (i == containerCount || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j++].copy());
+            } else {
+                result.append(keys[i], or(containers[i++], other.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     *
+     * @param other
+     * @return a new set with the values in this set but not in {@code other}
+     */
+    public IntBitmapSet andNot(IntBitmapSet other) {
+        IntBitmapSet result = new IntBitmapSet();
+        for (int i = 0, j = 0; i < containerCount; i++) {
+            while (j < other.containerCount && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.containerCount && other.keys[j] == keys[i]) {
+                result.append(keys[i], andNot(containers[i], other.containers[j]));
+            } else {
+                result.append(keys[i], containers[i].copy());
+            }
+        }
+        return result;
+    }
+
+    /**
+     *
+     * @param other
+     * @return the number of values in both sets
+     */
+    public int andCardinality(IntBitmapSet other) {
+        int count = 0;
+        for (int i = 0, j = 0; i < containerCount && j < other.containerCount;) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                count += andCardinality(containers[i++], other.containers[j++]);
+            }
+        }
+        return count;
+    }
+
+    /**
+     *
+     * @param other
+     * @return the number of values in any of the sets
+     */
+    public int orCardinality(IntBitmapSet other) {
+        return cardinality + other.cardinality - andCardinality(other);
+    }
+
+    /**
+     *
+     * @param other
+     * @return the number of values in this set but not in {@code other}
+     */
+    public int andNotCardinality(IntBitmapSet other) {
+        return cardinality - andCardinality(other);
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<Integer>() {
+            private int index = 0;
+            private int next = containerCount > 0 ? containers[0].nextValue(0) : -1;
+            private int last = -1;
+            private boolean canRemove = false;
+
+            @Override
+            public boolean hasNext() {
+                return index < containerCount;
+            }
+
+            @Override
+            public Integer next() {
+                if (index >= containerCount) {
+                    throw new NoSuchElementException();
+                }
+                last = keys[index] << 16 | next;
+                canRemove = true;
+                seek(index, next + 1);
+                return last;
+            }
+
+            private void seek(int from, int low) {
+                index = from;
+                next = index < containerCount ? containers[index].nextValue(low) : -1;
+                while (next < 0 && ++index < containerCount) {
+                    next = containers[index].nextValue(0);
+                }
+            }
+
+            @Override
+            public void remove() {
+                if (!canRemove) {
+                    throw new IllegalStateException();
+                }
+                canRemove = false;
+                IntBitmapSet.this.remove(last);
+                //The container may have changed type or disappeared
+                int i = containerIndex(high(last));
+                if (i >= 0) {
+                    seek(i, low(last) + 1);
+                } else {
+                    seek(-i - 1, 0);
+                }
+            }
+        };
+    }
+
+    // CONTAINER OPERATIONS
+    private static Container and(Container a, Container b) {
+        a = a.unrun();
+        b = b.unrun();
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+            ArrayContainer x = (ArrayContainer) a, y = (ArrayContainer) b;
+            ArrayContainer result = new ArrayContainer(Math.min(x.card, y.card));
+            for (int i = 0, j = 0; i < x.card && j < y.card;) {
+                if (x.content[i] < y.content[j]) {
+                    i++;
+                } else if (x.content[i] > y.content[j]) {
+                    j++;
+                } else {
+                    result.content[result.card++] = x.content[i];
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+        if (a instanceof ArrayContainer || b instanceof ArrayContainer) {
+            ArrayContainer x = (ArrayContainer) (a instanceof ArrayContainer ? a : b);
+            BitmapContainer y = (BitmapContainer) (a instanceof ArrayContainer ? b : a);
+            ArrayContainer result = new ArrayContainer(x.card);
+            for (int i = 0; i < x.card; i++) {
+                if (y.contains(x.content[i])) {
+                    result.content[result.card++] = x.content[i];
+                }
+            }
+            return result;
+        }
+        BitmapContainer x = (BitmapContainer) a, y = (BitmapContainer) b;
+        BitmapContainer result = new BitmapContainer();
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            result.words[w] = x.words[w] & y.words[w];
+            result.card += Long.bitCount(result.words[w]);
+        }
+        return result.shrink();
+    }
+
+    private static int andCardinality(Container a, Container b) {
+        a = a.unrun();
+        b = b.unrun();
+        int count = 0;
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+            ArrayContainer x = (ArrayContainer) a, y = (ArrayContainer) b;
+            for (int i = 0, j = 0; i < x.card && j < y.card;) {
+                char u = x.content[i], v = y.content[j];
+                count += u == v ? 1 : 0;
+                i += u <= v ? 1 : 0;
+                j += u >= v ? 1 : 0;
+            }
+        } else if (a instanceof ArrayContainer || b instanceof ArrayContainer) {
+            ArrayContainer x = (ArrayContainer) (a instanceof ArrayContainer ? a : b);
+            BitmapContainer y = (BitmapContainer) (a instanceof ArrayContainer ? b : a);
+            for (int i = 0; i < x.card; i++) {
+                count += y.contains(x.content[i]) ? 1 : 0;
+            }
+        } else {
+            BitmapContainer x = (BitmapContainer) a, y = (BitmapContainer) b;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                count += Long.bitCount(x.words[w] & y.words[w]);
+            }
+        }
+        return count;
+    }
+
+    private static Container or(Container a, Container b) {
+        a = a.unrun();
+        b = b.unrun();
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+            ArrayContainer x = (ArrayContainer) a, y = (ArrayContainer) b;
+            if (x.card + y.card > ARRAY_MAX) {
+                BitmapContainer result = x.toBitmap();
+                for (int j = 0; j < y.card; j++) {
+                    result.add(y.content[j]);
+                }
+                return result.shrink();
+            }
+            ArrayContainer result = new ArrayContainer(x.card + y.card);
+            int i = 0, j = 0;
+            while (i < x.card && j < y.card) {
+                char u = x.content[i], v = y.content[j];
+                result.content[result.card++] = u <= v ? u : v;
+                i += u <= v ? 1 : 0;
+                j += u >= v ? 1 : 0;
+            }
+            while (i < x.card) {
+                result.content[result.card++] = x.content[i++];
+            }
+            while (j < y.card) {
+                result.content[result.card++] = y.content[j++];
+            }
+            return result;
+        }
+        if (a instanceof ArrayContainer || b instanceof ArrayContainer) {
+            ArrayContainer x = (ArrayContainer) (a instanceof ArrayContainer ? a : b);
+            BitmapContainer result = ((BitmapContainer) (a instanceof ArrayContainer ? b : a)).copy();
+            for (int i = 0; i < x.card; i++) {
+                result.add(x.content[i]);
+            }
+            return result;
+        }
+        BitmapContainer x = (BitmapContainer) a, y = (BitmapContainer) b;
+        BitmapContainer result = new BitmapContainer();
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            result.words[w] = x.words[w] | y.words[w];
+            result.card += Long.bitCount(result.words[w]);
+        }
+        return result;
+    }
+
+    private static Container andNot(Container a, Container b) {
+        a = a.unrun();
+        b = b.unrun();
+        if (a instanceof ArrayContainer) {
+            ArrayContainer x = (ArrayContainer) a;
+            ArrayContainer result = new ArrayContainer(x.card);
+            for (int i = 0; i < x.card; i++) {
+                if (!b.contains(x.content[i])) {
+                    result.content[result.card++] = x.content[i];
+                }
+            }
+            return result;
+        }
+        BitmapContainer result = ((BitmapContainer) a).copy();
+        if (b instanceof ArrayContainer) {
+            ArrayContainer y = (ArrayContainer) b;
+            //Clears the bits directly, remove() would shrink at every step
+            for (int j = 0; j < y.card; j++) {
+                char x = y.content[j];
+                long word = result.words[x >>> 6];
+                result.words[x >>> 6] = word & ~(1L << x);
+                result.card -= (word & (1L << x)) != 0 ? 1 : 0;
+            }
+            return result.shrink();
+        }
+        BitmapContainer y = (BitmapContainer) b;
+        result.card = 0;
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            result.words[w] &= ~y.words[w];
+            result.card += Long.bitCount(result.words[w]);
+        }
+        return result.shrink();
+    }
+
+    /**
+     * The 16 low bits of the values sharing the same 16 high bits
+     */
+    private abstract static class Container implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        abstract boolean contains(char x);
+
+        /**
+         * @return the container holding the new value, possibly a new one
+         */
+        abstract Container add(char x);
+
+        /**
+         * @return the container without the value, possibly a new one
+         */
+        abstract Container remove(char x);
+
+        abstract int cardinality();
+
+        /**
+         * @return the smallest value greater or equal than {@code from}, -1 if
+         * there is none
+         */
+        abstract int nextValue(int from);
+
+        abstract Container copy();
+
+        /**
+         * @return an equivalent array or bitmap container
+         */
+        Container unrun() {
+            return this;
+        }
+
+        Container runOptimize() {
+            int runs = 0;
+            for (int v = nextValue(0), last = -2; v >= 0; last = v, v = nextValue(v + 1)) {
+                if (v != last + 1) {
+                    runs++;
+                }
+            }
+            //A run takes 4 bytes, a value in an array 2, the bitmap 8KB
+            int size = this instanceof ArrayContainer ? 2 * cardinality() : 8 * BITMAP_WORDS;
+            return 4 * runs < size ? new RunContainer(this, runs) : this;
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+
+        private static final long serialVersionUID = 1L;
+        private char[] content;
+        private int card;
+
+        ArrayContainer(int capacity) {
+            this.content = new char[capacity];
+        }
+
+        @Override
+        boolean contains(char x) {
+            return Arrays.binarySearch(content, 0, card, x) >= 0;
+        }
+
+        @Override
+        Container add(char x) {
+            int i = Arrays.binarySearch(content, 0, card, x);
+            if (i >= 0) {
+                return this;
+            }
+            if (card >= ARRAY_MAX) {
+                return toBitmap().add(x);
+            }
+            i = -i - 1;
+            if (card == content.length) {
+                content = Arrays.copyOf(content, Math.min(ARRAY_MAX, Math.max(4, 2 * card)));
+            }
+            System.arraycopy(content, i, content, i + 1, card - i);
+            content[i] = x;
+            card++;
+            return this;
+        }
+
+        @Override
+        Container remove(char x) {
+            int i = Arrays.binarySearch(content, 0, card, x);
+            if (i >= 0) {
+                System.arraycopy(content, i + 1, content, i, card - i - 1);
+                card--;
+            }
+            return this;
+        }
+
+        @Override
+        int cardinality() {
+            return card;
+        }
+
+        @Override
+        int nextValue(int from) {
+            if (from > Character.MAX_VALUE) {
+                return -1;
+            }
+            int i = Arrays.binarySearch(content, 0, card, (char) from);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            return i < card ? content[i] : -1;
+        }
+
+        @Override
+        Container copy() {
+            ArrayContainer copy = new ArrayContainer(0);
+            copy.content = Arrays.copyOf(content, card);
+            copy.card = card;
+            return copy;
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < card; i++) {
+                bitmap.add(content[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+
+        private static final long serialVersionUID = 1L;
+        private final long[] words = new long[BITMAP_WORDS];
+        private int card;
+
+        @Override
+        boolean contains(char x) {
+            return (words[x >>> 6] & (1L << x)) != 0;
+        }
+
+        @Override
+        BitmapContainer add(char x) {
+            long word = words[x >>> 6];
+            words[x >>> 6] = word | (1L << x);
+            card += (word & (1L << x)) == 0 ? 1 : 0;
+            return this;
+        }
+
+        @Override
+        Container remove(char x) {
+            long word = words[x >>> 6];
+            words[x >>> 6] = word & ~(1L << x);
+            card -= (word & (1L << x)) != 0 ? 1 : 0;
+            return shrink();
+        }
+
+        /**
+         * @return an array container if the values fit in it
+         */
+        Container shrink() {
+            if (card > ARRAY_MAX) {
+                return this;
+            }
+            ArrayContainer array = new ArrayContainer(card);
+            for (int v = nextValue(0); v >= 0; v = nextValue(v + 1)) {
+                array.content[array.card++] = (char) v;
+            }
+            return array;
+        }
+
+        @Override
+        int cardinality() {
+            return card;
+        }
+
+        @Override
+        int nextValue(int from) {
+            if (from > Character.MAX_VALUE) {
+                return -1;
+            }
+            int w = from >>> 6;
+            long word = words[w] & (-1L << from);
+            while (word == 0) {
+                if (++w == BITMAP_WORDS) {
+                    return -1;
+                }
+                word = words[w];
+            }
+            return w * Long.SIZE + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        BitmapContainer copy() {
+            BitmapContainer copy = new BitmapContainer();
+            System.arraycopy(words, 0, copy.words, 0, BITMAP_WORDS);
+            copy.card = card;
+            return copy;
+        }
+    }
+
+    /**
+     * Sorted runs of consecutive values, read-only: a modification turns it
+     * back into an array or bitmap container
+     */
+    private static final class RunContainer extends Container {
+
+        private static final long serialVersionUID = 1L;
+        /**
+         * First value of each run
+         */
+        private final char[] starts;
+        /**
+         * Length of each run minus one
+         */
+        private final char[] lengths;
+        private final int card;
+
+        RunContainer(Container values, int runs) {
+            this.starts = new char[runs];
+            this.lengths = new char[runs];
+            this.card = values.cardinality();
+            int r = -1;
+            for (int v = values.nextValue(0), last = -2; v >= 0; last = v, v = values.nextValue(v + 1)) {
+                if (v != last + 1) {
+                    starts[++r] = (char) v;
+                } else {
+                    lengths[r]++;
+                }
+            }
+        }
+
+        /**
+         * @return the run starting at or before x, -1 if none
+         */
+        private int run(int x) {
+            int i = Arrays.binarySearch(starts, (char) x);
+            return i >= 0 ? i : -i - 2;
+        }
+
+        @Override
+        boolean contains(char x) {
+            int r = run(x);
+            return r >= 0 && x - starts[r] <= lengths[r];
+        }
+
+        @Override
+        Container add(char x) {
+            return contains(x) ? this : unrun().add(x);
+        }
+
+        @Override
+        Container remove(char x) {
+            return contains(x) ? unrun().remove(x) : this;
+        }
+
+        @Override
+        int cardinality() {
+            return card;
+        }
+
+        @Override
+        int nextValue(int from) {
+            if (from > Character.MAX_VALUE) {
+                return -1;
+            }
+            int r = run(from);
+            if (r >= 0 && from - starts[r] <= lengths[r]) {
+                return from;
+            }
+            return r + 1 < starts.length ? starts[r + 1] : -1;
+        }
+
+        @Override
+        Container copy() {
+            return this;
+        }
+
+        @Override
+        Container unrun() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int r = 0; r < starts.length; r++) {
+                for (int v = starts[r], end = starts[r] + lengths[r]; v <= end; v++) {
+                    bitmap.words[v >>> 6] |= 1L << v;
+                }
+            }
+            bitmap.card = card;
+            return bitmap.shrink();
+        }
+
+        @Override
+        Container runOptimize() {
+            return this;
+        }
+    }
+}
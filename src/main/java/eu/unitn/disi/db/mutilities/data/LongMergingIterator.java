@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2012 Davide Mottin <mottin@disi.unitn.eu>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package eu.unitn.disi.db.mutilities.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterators;
+
+/**
+ * The primitive counterpart of {@link MergingIterator}: merges iterators of
+ * longs sorted in ascending order, e.g. posting lists, without boxing. Use
+ * {@link #nextLong()} to read the elements without allocating.
+ */
+public class LongMergingIterator implements PrimitiveIterator.OfLong {
+
+    private final PrimitiveIterator.OfLong[] iters;
+    private final boolean distinct;
+    /* head of each iterator */
+    private final long[] heads;
+    /* iterators with a head, ordered by head */
+    private final int[] heap;
+    private int size;
+
+    /**
+     *
+     * @param iters The iterators, sorted in ascending order
+     * @param distinct True to return equal elements only once
+     */
+    public LongMergingIterator(Collection<? extends PrimitiveIterator.OfLong> iters, boolean distinct) {
+        if (iters == null) {
+            throw new IllegalArgumentException("List of iterators is null");
+        }
+        this.iters = iters.toArray(new PrimitiveIterator.OfLong[iters.size()]);
+        this.distinct = distinct;
+        this.heads = new long[this.iters.length];
+        this.heap = new int[this.iters.length];
+        for (int i = 0; i < this.iters.length; i++) {
+            if (this.iters[i] != null && this.iters[i].hasNext()) {
+                heads[i] = this.iters[i].nextLong();
+                heap[size] = i;
+                siftUp(size++);
+            }
+        }
+    }
+
+    /**
+     * Merges sorted arrays
+     *
+     * @param distinct True to return equal elements only once
+     * @param sorted The arrays, sorted in ascending order
+     * @return the merging iterator
+     */
+    public static LongMergingIterator of(boolean distinct, long[]... sorted) {
+        List<PrimitiveIterator.OfLong> iters = new ArrayList<>(sorted.length);
+        for (long[] a : sorted) {
+            iters.add(Spliterators.iterator(Arrays.spliterator(a)));
+        }
+        return new LongMergingIterator(iters, distinct);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return size > 0;
+    }
+
+    @Override
+    public long nextLong() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        long e = heads[heap[0]];
+        advance();
+        while (distinct && size > 0 && heads[heap[0]] == e) {
+            advance();
+        }
+        return e;
+    }
+
+    /**
+     * Replaces the smallest head with the next element of its iterator
+     */
+    private void advance() {
+        int i = heap[0];
+        if (iters[i].hasNext()) {
+            heads[i] = iters[i].nextLong();
+        } else {
+            heap[0] = heap[--size];
+        }
+        siftDown(0);
+    }
+
+    private boolean less(int i1, int i2) {
+        return heads[i1] < heads[i2] || heads[i1] == heads[i2] && i1 < i2;
+    }
+
+    private void siftUp(int node) {
+        int i = heap[node];
+        while (node > 0) {
+            int parent = (node - 1) >>> 1;
+            if (!less(i, heap[parent])) {
+                break;
+            }
+            heap[node] = heap[parent];
+            node = parent;
+        }
+        heap[node] = i;
+    }
+
+    private void siftDown(int node) {
+        if (size == 0) {
+            return;
+        }
+        int i = heap[node];
+        int child;
+        while ((child = 2 * node + 1) < size) {
+            if (child + 1 < size && less(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!less(heap[child], i)) {
+                break;
+            }
+            heap[node] = heap[child];
+            node = child;
+        }
+        heap[node] = i;
+    }
+}
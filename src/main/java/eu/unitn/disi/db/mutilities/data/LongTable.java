@@ -0,0 +1,379 @@
+/*
+ * Copyright (C) 2012 Davide Mottin <mottin@disi.unitn.eu>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package eu.unitn.disi.db.mutilities.data;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A table of longs with a fixed number of columns stored row-major in a single
+ * contiguous array. It replaces the {@code long[][]} tables used by
+ * {@link CollectionUtilities#binaryTableSort(long[][])} and
+ * {@link CollectionUtilities#binaryTableSearch(long[][], int, long)} without
+ * the per-row object header and reference: a 3 columns row takes 24 bytes
+ * instead of about 56.
+ *
+ * <p>
+ * Since the rows live in one array, the table can hold at most
+ * {@code Integer.MAX_VALUE / columns} rows.
+ * </p>
+ */
+public class LongTable implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int DEFAULT_ROWS = 16;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private final int columns;
+    private long[] data;
+    private int rows;
+
+    /**
+     * Creates an empty table
+     *
+     * @param columns The number of columns of each row
+     */
+    public LongTable(int columns) {
+        this(columns, DEFAULT_ROWS);
+    }
+
+    /**
+     * Creates an empty table with room for {@code initialRows} rows
+     *
+     * @param columns The number of columns of each row
+     * @param initialRows The number of rows to allocate
+     */
+    public LongTable(int columns, int initialRows) {
+        if (columns <= 0) {
+            throw new IllegalArgumentException("columns = " + columns + "; expected a positive integer.");
+        }
+        if (initialRows < 0 || (long) initialRows * columns > MAX_ARRAY_SIZE) {
+            throw new IllegalArgumentException("Cannot allocate " + initialRows + " rows of " + columns + " columns");
+        }
+        this.columns = columns;
+        this.data = new long[initialRows * columns];
+    }
+
+    /**
+     * Copies a bidimensional array into a new table, all the rows must have
+     * the same length
+     *
+     * @param table The table to be copied
+     */
+    public LongTable(long[][] table) {
+        this(table.length == 0 ? 1 : table[0].length, table.length);
+        for (long[] row : table) {
+            addRow(row);
+        }
+    }
+
+    /**
+     * Appends a row to the table
+     *
+     * @param values The values of the row, must be {@link #columns()} long
+     * @return the index of the new row
+     */
+    public int addRow(long... values) {
+        if (values.length != columns) {
+            throw new IllegalArgumentException("Row has " + values.length + " values, expected " + columns);
+        }
+        ensureCapacity(rows + 1);
+        System.arraycopy(values, 0, data, rows * columns, columns);
+        return rows++;
+    }
+
+    /**
+     * Makes room for at least {@code minRows} rows
+     *
+     * @param minRows The minimum number of rows the table must be able to hold
+     */
+    public void ensureCapacity(int minRows) {
+        long required = (long) minRows * columns;
+        if (required > data.length) {
+            if (required > MAX_ARRAY_SIZE) {
+                throw new IllegalStateException("Cannot hold " + minRows + " rows of " + columns + " columns");
+            }
+            long grown = Math.min(Math.max((long) data.length + (data.length >> 1), required), MAX_ARRAY_SIZE);
+            data = Arrays.copyOf(data, (int) (grown - grown % columns));
+        }
+    }
+
+    /**
+     * Releases the memory allocated beyond the last row
+     */
+    public void trimToSize() {
+        if (data.length > rows * columns) {
+            data = Arrays.copyOf(data, rows * columns);
+        }
+    }
+
+    public long get(int row, int column) {
+        return data[index(row, column)];
+    }
+
+    public void set(int row, int column, long value) {
+        data[index(row, column)] = value;
+    }
+
+    /**
+     * Copies a row into {@code dest}
+     *
+     * @param row The row to be copied
+     * @param dest The destination, at least {@link #columns()} long
+     * @return dest
+     */
+    public long[] getRow(int row, long[] dest) {
+        System.arraycopy(data, index(row, 0), dest, 0, columns);
+        return dest;
+    }
+
+    /**
+     *
+     * @param row The row to be copied
+     * @return a copy of the row
+     */
+    public long[] getRow(int row) {
+        return getRow(row, new long[columns]);
+    }
+
+    /**
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return rows;
+    }
+
+    public boolean isEmpty() {
+        return rows == 0;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    public void clear() {
+        rows = 0;
+    }
+
+    /**
+     *
+     * @return a copy of the table as a bidimensional array
+     */
+    public long[][] toArray() {
+        long[][] table = new long[rows][];
+        for (int i = 0; i < rows; i++) {
+            table[i] = getRow(i);
+        }
+        return table;
+    }
+
+    private int index(int row, int column) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            throw new IndexOutOfBoundsException("Cell (" + row + ", " + column + ") out of a " + rows + "x" + columns + " table");
+        }
+        return row * columns + column;
+    }
+
+    private void checkField(int field) {
+        if (field < 0 || field >= columns) {
+            throw new IndexOutOfBoundsException("Field " + field + " out of " + columns + " columns");
+        }
+    }
+
+    private void checkRange(int fromRow, int toRow) {
+        if (fromRow < 0 || toRow > rows || fromRow > toRow) {
+            throw new IndexOutOfBoundsException("Range [" + fromRow + ", " + toRow + ") out of " + rows + " rows");
+        }
+    }
+
+    /**
+     * Sort the rows in place using the value in {@code field}. The sort is an
+     * introsort that swaps rows inside the backing array: it needs no extra
+     * memory but it is not stable.
+     *
+     * @param field The column used as key
+     */
+    public void sort(int field) {
+        checkField(field);
+        introSort(field, 0, rows, 2 * (32 - Integer.numberOfLeadingZeros(rows)));
+    }
+
+    private long key(int row, int field) {
+        return data[row * columns + field];
+    }
+
+    private void swap(int r1, int r2) {
+        int i = r1 * columns, j = r2 * columns;
+        for (int c = 0; c < columns; c++, i++, j++) {
+            long tmp = data[i];
+            data[i] = data[j];
+            data[j] = tmp;
+        }
+    }
+
+    private void introSort(int field, int from, int to, int depth) {
+        while (to - from > INSERTION_SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                heapSort(field, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            //Median of three moved to mid
+            if (key(mid, field) < key(from, field)) {
+                swap(mid, from);
+            }
+            if (key(to - 1, field) < key(mid, field)) {
+                swap(to - 1, mid);
+                if (key(mid, field) < key(from, field)) {
+                    swap(mid, from);
+                }
+            }
+            long pivot = key(mid, field);
+            int i = from, j = to - 1;
+            while (i <= j) {
+                while (key(i, field) < pivot) {
+                    i++;
+                }
+                while (key(j, field) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            //Recurse on the smallest part, loop on the largest
+            if (j - from < to - i) {
+                introSort(field, from, j + 1, depth);
+                from = i;
+            } else {
+                introSort(field, i, to, depth);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && key(j - 1, field) > key(j, field); j--) {
+                swap(j, j - 1);
+            }
+        }
+    }
+
+    private void heapSort(int field, int from, int to) {
+        int n = to - from;
+        for (int i = (n >>> 1) - 1; i >= 0; i--) {
+            siftDown(field, from, i, n);
+        }
+        for (int last = n - 1; last > 0; last--) {
+            swap(from, from + last);
+            siftDown(field, from, 0, last);
+        }
+    }
+
+    private void siftDown(int field, int base, int node, int n) {
+        int child;
+        while ((child = 2 * node + 1) < n) {
+            if (child + 1 < n && key(base + child + 1, field) > key(base + child, field)) {
+                child++;
+            }
+            if (key(base + node, field) >= key(base + child, field)) {
+                return;
+            }
+            swap(base + node, base + child);
+            node = child;
+        }
+    }
+
+    /**
+     * Search a key in a table sorted on {@code field}, same contract as
+     * {@link CollectionUtilities#binaryTableSearch(long[][], int, long)}
+     *
+     * @param field The column the table is sorted on
+     * @param key The key to be searched
+     * @return the index of a row containing the key, if any, otherwise
+     * {@code -(insertion point) - 1}
+     */
+    public int binarySearch(int field, long key) {
+        return binarySearch(field, 0, rows, key);
+    }
+
+    public int binarySearch(int field, int fromRow, int toRow, long key) {
+        checkField(field);
+        checkRange(fromRow, toRow);
+        int low = fromRow;
+        int high = toRow - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midVal = data[mid * columns + field];
+
+            if (midVal < key) {
+                low = mid + 1;
+            } else if (midVal > key) {
+                high = mid - 1;
+            } else {
+                return mid; // key found
+            }
+        }
+        return -(low + 1);  // key not found.
+    }
+
+    /**
+     * Scan start for a table sorted on {@code field}
+     *
+     * @param field The column the table is sorted on
+     * @param key The key to be searched
+     * @return the first row whose key is greater or equal than {@code key}
+     */
+    public int lowerBound(int field, long key) {
+        checkField(field);
+        int low = 0, high = rows;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (data[mid * columns + field] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Scan end for a table sorted on {@code field}: the rows with
+     * {@code from <= key <= to} are the ones in
+     * {@code [lowerBound(field, from), upperBound(field, to))}
+     *
+     * @param field The column the table is sorted on
+     * @param key The key to be searched
+     * @return the first row whose key is greater than {@code key}
+     */
+    public int upperBound(int field, long key) {
+        checkField(field);
+        int low = 0, high = rows;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (data[mid * columns + field] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
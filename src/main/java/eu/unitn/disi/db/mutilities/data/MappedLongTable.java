@@ -0,0 +1,436 @@
+/*
+ * Copyright (C) 2012 Davide Mottin <mottin@disi.unitn.eu>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package eu.unitn.disi.db.mutilities.data;
+
+import eu.unitn.disi.db.mutilities.exceptions.ParseException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only table of longs memory-mapped from a file, so that a sorted
+ * table is written once and then searched by every process without loading
+ * it into the heap.
+ *
+ * <p>
+ * The file is a {@value #HEADER_SIZE} bytes header (magic number, version,
+ * number of columns, sorted column or -1, number of rows) followed by the
+ * rows, each one as {@code columns} little-endian longs. Since a single
+ * mapping cannot exceed 2GB, the rows are mapped in several segments of a
+ * power of two rows each.
+ * </p>
+ */
+public final class MappedLongTable implements Closeable {
+
+    public static final int HEADER_SIZE = 32;
+    private static final int MAGIC = 0x4C544231; // "LTB1"
+    /* magic number of a file still being written or whose writing failed */
+    private static final int INCOMPLETE = 0;
+    private static final int VERSION = 1;
+    private static final int MAX_SEGMENT_SIZE = 1 << 30;
+
+    private final String file;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final int columns;
+    private final int sortedField;
+    private final long rows;
+    private final int rowSize;
+    private final int segmentShift;
+    private final long segmentMask;
+
+    private MappedLongTable(String file, FileChannel channel, int columns, int sortedField, long rows) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.columns = columns;
+        this.sortedField = sortedField;
+        this.rows = rows;
+        this.rowSize = columns * Long.BYTES;
+        long rowsPerSegment = Long.highestOneBit(MAX_SEGMENT_SIZE / rowSize);
+        this.segmentShift = Long.numberOfTrailingZeros(rowsPerSegment);
+        this.segmentMask = rowsPerSegment - 1;
+        this.segments = new MappedByteBuffer[(int) ((rows + rowsPerSegment - 1) >>> segmentShift)];
+        for (int i = 0; i < segments.length; i++) {
+            long firstRow = (long) i << segmentShift;
+            long segmentRows = Math.min(rowsPerSegment, rows - firstRow);
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + firstRow * rowSize, segmentRows * rowSize);
+            segments[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Maps a table file written by {@link #write(long[][], int, String)} or
+     * by a {@link Writer}
+     *
+     * @param file The table file
+     * @return the mapped table
+     * @throws IOException If the file is not readable
+     * @throws ParseException If the file is not a table file
+     */
+    public static MappedLongTable open(String file) throws IOException, ParseException {
+        FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new ParseException("%s is not a table file", file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new ParseException("Table file %s has version %d, expected %d", file, version, VERSION);
+            }
+            int columns = header.getInt();
+            int sortedField = header.getInt();
+            long rows = header.getLong();
+            if (columns <= 0 || sortedField < -1 || sortedField >= columns || rows < 0
+                    || channel.size() < HEADER_SIZE + rows * columns * Long.BYTES) {
+                throw new ParseException("Table file %s has an invalid header or is truncated", file);
+            }
+            return new MappedLongTable(file, channel, columns, sortedField, rows);
+        } catch (IOException | ParseException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Writes a table to a file that can be mapped with {@link #open(String)}
+     *
+     * @param table The table to be written, all the rows must have the same
+     * length
+     * @param sortedField The column the table is sorted on, -1 if not sorted
+     * @param file The output file, overwritten if it exists
+     * @throws IOException If the file cannot be written
+     */
+    public static void write(long[][] table, int sortedField, String file) throws IOException {
+        int columns = table.length == 0 ? 1 : table[0].length;
+        try (Writer writer = new Writer(file, columns, sortedField)) {
+            try {
+                for (long[] row : table) {
+                    writer.writeRow(row);
+                }
+            } catch (IOException | RuntimeException ex) {
+                writer.abort();
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Writes a table to a file that can be mapped with {@link #open(String)}
+     *
+     * @param table The table to be written
+     * @param sortedField The column the table is sorted on, -1 if not sorted
+     * @param file The output file, overwritten if it exists
+     * @throws IOException If the file cannot be written
+     */
+    public static void write(LongTable table, int sortedField, String file) throws IOException {
+        long[] row = new long[table.columns()];
+        try (Writer writer = new Writer(file, table.columns(), sortedField)) {
+            try {
+                for (int i = 0; i < table.size(); i++) {
+                    writer.writeRow(table.getRow(i, row));
+                }
+            } catch (IOException | RuntimeException ex) {
+                writer.abort();
+                throw ex;
+            }
+        }
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     *
+     * @return the number of rows
+     */
+    public long size() {
+        return rows;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     *
+     * @return the column the table is sorted on, -1 if it is not sorted
+     */
+    public int getSortedField() {
+        return sortedField;
+    }
+
+    public long get(long row, int column) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            throw new IndexOutOfBoundsException("Cell (" + row + ", " + column + ") out of a " + rows + "x" + columns + " table");
+        }
+        return key(row, column);
+    }
+
+    /**
+     * Copies a row into {@code dest}
+     *
+     * @param row The row to be copied
+     * @param dest The destination, at least {@link #columns()} long
+     * @return dest
+     */
+    public long[] getRow(long row, long[] dest) {
+        for (int c = 0; c < columns; c++) {
+            dest[c] = get(row, c);
+        }
+        return dest;
+    }
+
+    private long key(long row, int column) {
+        return segments[(int) (row >>> segmentShift)].getLong((int) (row & segmentMask) * rowSize + column * Long.BYTES);
+    }
+
+    private void checkSorted() {
+        if (sortedField < 0) {
+            throw new IllegalStateException("Table " + file + " is not sorted");
+        }
+    }
+
+    /**
+     * Same contract of
+     * {@link CollectionUtilities#binaryTableSearch(long[][], int, long)} on
+     * the sorted column
+     *
+     * @param key The key to be searched
+     * @return the index of a row containing the key, if any, otherwise
+     * {@code -(insertion point) - 1}
+     * @throws IllegalStateException If the table is not sorted
+     */
+    public long binarySearch(long key) {
+        checkSorted();
+        long low = 0;
+        long high = rows - 1;
+
+        while (low <= high) {
+            long mid = (low + high) >>> 1;
+            long midVal = key(mid, sortedField);
+
+            if (midVal < key) {
+                low = mid + 1;
+            } else if (midVal > key) {
+                high = mid - 1;
+            } else {
+                return mid; // key found
+            }
+        }
+        return -(low + 1);  // key not found.
+    }
+
+    /**
+     *
+     * @param key The key to be searched
+     * @return the first row whose sorted column is greater or equal than
+     * {@code key}
+     * @throws IllegalStateException If the table is not sorted
+     */
+    public long lowerBound(long key) {
+        checkSorted();
+        long low = 0, high = rows;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (key(mid, sortedField) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     *
+     * @param key The key to be searched
+     * @return the first row whose sorted column is greater than {@code key}
+     * @throws IllegalStateException If the table is not sorted
+     */
+    public long upperBound(long key) {
+        checkSorted();
+        long low = 0, high = rows;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (key(mid, sortedField) <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Closes the file, the mapping is released by the garbage collector once
+     * the table is no longer referenced
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Writes a table file row by row, the number of rows is stored in the
+     * header on {@link #close()}. If the table is declared sorted the order
+     * of the rows is checked while writing.
+     *
+     * Until it is closed, or if a row could not be written or
+     * {@link #abort()} was called, the file has an invalid header and
+     * {@link MappedLongTable#open(String)} rejects it.
+     */
+    public static final class Writer implements Closeable {
+
+        private static final int BUFFER_SIZE = 1 << 16;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final int columns;
+        private final int sortedField;
+        private long rows;
+        private long lastKey;
+        private long position = HEADER_SIZE;
+        private boolean failed = false;
+
+        /**
+         *
+         * @param file The output file, overwritten if it exists
+         * @param columns The number of columns of each row
+         * @param sortedField The column the rows are sorted on, -1 if not
+         * sorted
+         * @throws IOException If the file cannot be written
+         */
+        public Writer(String file, int columns, int sortedField) throws IOException {
+            if (columns <= 0 || sortedField < -1 || sortedField >= columns) {
+                throw new IllegalArgumentException("Invalid columns " + columns + " or sorted field " + sortedField);
+            }
+            this.columns = columns;
+            this.sortedField = sortedField;
+            this.buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, HEADER_SIZE + columns * Long.BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+            this.channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            writeHeader(INCOMPLETE);
+        }
+
+        private void writeHeader(int magic) throws IOException {
+            buffer.clear();
+            buffer.putInt(magic).putInt(VERSION).putInt(columns).putInt(sortedField).putLong(rows).putLong(0L);
+            buffer.flip();
+            long position = 0;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Appends a row
+         *
+         * @param row The values of the row, must be {@code columns} long
+         * @throws IOException If the file cannot be written
+         * @throws IllegalArgumentException If the row breaks the declared
+         * order
+         */
+        public void writeRow(long... row) throws IOException {
+            if (failed) {
+                throw new IllegalStateException("A previous row could not be written");
+            }
+            if (row.length != columns) {
+                failed = true;
+                throw new IllegalArgumentException("Row has " + row.length + " values, expected " + columns);
+            }
+            if (sortedField >= 0) {
+                if (rows > 0 && row[sortedField] < lastKey) {
+                    failed = true;
+                    throw new IllegalArgumentException("Row " + rows + " is not sorted on field " + sortedField);
+                }
+                lastKey = row[sortedField];
+            }
+            if (buffer.remaining() < columns * Long.BYTES) {
+                try {
+                    flush();
+                } catch (IOException ex) {
+                    failed = true;
+                    throw ex;
+                }
+            }
+            for (long value : row) {
+                buffer.putLong(value);
+            }
+            rows++;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+
+        /**
+         *
+         * @return the number of rows written so far
+         */
+        public long size() {
+            return rows;
+        }
+
+        /**
+         * Closes the file leaving the header invalid, so that the rows
+         * written so far are not mistaken for a complete table
+         *
+         * @throws IOException If the file cannot be closed
+         */
+        public void abort() throws IOException {
+            failed = true;
+            close();
+        }
+
+        /**
+         * Writes the header with the number of rows and closes the file, the
+         * header stays invalid if some row could not be written
+         *
+         * @throws IOException If the file cannot be written
+         */
+        @Override
+        public void close() throws IOException {
+            if (channel.isOpen()) {
+                try {
+                    if (!failed) {
+                        flush();
+                        writeHeader(MAGIC);
+                    }
+                } finally {
+                    channel.close();
+                }
+            }
+        }
+    }
+}
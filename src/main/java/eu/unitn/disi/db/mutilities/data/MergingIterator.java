@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2012 Davide Mottin <mottin@disi.unitn.eu>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package eu.unitn.disi.db.mutilities.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Merges several sorted iterators into a single sorted iterator, unlike
+ * {@link CompoundIterator} which concatenates them. A binary heap holds the
+ * head of each iterator, so each element costs O(log k) comparisons for k
+ * iterators and no allocation. Equal elements are returned in the order of
+ * the iterators, or only once if the merge is distinct.
+ *
+ * @param <E> The type of the elements
+ * @see LongMergingIterator
+ */
+public class MergingIterator<E> implements Iterator<E> {
+
+    private final List<Iterator<? extends E>> iters;
+    private final Comparator<? super E> comparator;
+    private final boolean distinct;
+    /* head of each iterator */
+    private final Object[] heads;
+    /* iterators with a head, ordered by head and then by index */
+    private final int[] heap;
+    private int size;
+
+    /**
+     * Merges iterators sorted by natural order
+     *
+     * @param iters The sorted iterators
+     * @param distinct True to return equal elements only once
+     */
+    public MergingIterator(Collection<? extends Iterator<? extends E>> iters, boolean distinct) {
+        this(iters, null, distinct);
+    }
+
+    /**
+     *
+     * @param iters The iterators sorted by {@code comparator}
+     * @param comparator The order of the iterators, null for natural order
+     * @param distinct True to return equal elements only once
+     */
+    public MergingIterator(Collection<? extends Iterator<? extends E>> iters, Comparator<? super E> comparator, boolean distinct) {
+        if (iters == null) {
+            throw new IllegalArgumentException("List of iterators is null");
+        }
+        this.iters = new ArrayList<>(iters);
+        this.comparator = comparator;
+        this.distinct = distinct;
+        this.heads = new Object[this.iters.size()];
+        this.heap = new int[this.iters.size()];
+        for (int i = 0; i < this.iters.size(); i++) {
+            Iterator<? extends E> it = this.iters.get(i);
+            if (it != null && it.hasNext()) {
+                heads[i] = it.next();
+                heap[size] = i;
+                siftUp(size++);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return size > 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E next() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        E e = (E) heads[heap[0]];
+        advance();
+        while (distinct && size > 0 && compare((E) heads[heap[0]], e) == 0) {
+            advance();
+        }
+        return e;
+    }
+
+    /**
+     * Replaces the smallest head with the next element of its iterator
+     */
+    private void advance() {
+        int i = heap[0];
+        Iterator<? extends E> it = iters.get(i);
+        if (it.hasNext()) {
+            heads[i] = it.next();
+        } else {
+            heads[i] = null;
+            heap[0] = heap[--size];
+        }
+        siftDown(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E e1, E e2) {
+        if (this.comparator != null) {
+            return comparator.compare(e1, e2);
+        }
+        Comparable<? super E> c1 = (Comparable<? super E>) e1;
+        return c1.compareTo(e2);
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean less(int i1, int i2) {
+        int cmp = compare((E) heads[i1], (E) heads[i2]);
+        return cmp < 0 || cmp == 0 && i1 < i2;
+    }
+
+    private void siftUp(int node) {
+        int i = heap[node];
+        while (node > 0) {
+            int parent = (node - 1) >>> 1;
+            if (!less(i, heap[parent])) {
+                break;
+            }
+            heap[node] = heap[parent];
+            node = parent;
+        }
+        heap[node] = i;
+    }
+
+    private void siftDown(int node) {
+        if (size == 0) {
+            return;
+        }
+        int i = heap[node];
+        int child;
+        while ((child = 2 * node + 1) < size) {
+            if (child + 1 < size && less(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!less(heap[child], i)) {
+                break;
+            }
+            heap[node] = heap[child];
+            node = child;
+        }
+        heap[node] = i;
+    }
+}
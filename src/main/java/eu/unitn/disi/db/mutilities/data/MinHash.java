@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2012 Davide Mottin <mottin@disi.unitn.eu>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package eu.unitn.disi.db.mutilities.data;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+/**
+ * A MinHash signature of a set: for each of {@code numHashes} hash functions
+ * it keeps the minimum hash of the elements. The fraction of positions in
+ * which two signatures agree estimates the Jaccard similarity of the sets
+ * with a standard error of about {@code 1 / sqrt(numHashes)}, whatever the
+ * size of the sets.
+ *
+ * <p>
+ * Signatures are comparable only if they are built with the same number of
+ * hashes and seed. Objects are hashed through their {@code hashCode()}, an
+ * {@code int} hashes as the equal {@code Integer} and a {@code long} as the
+ * equal {@code Long}.
+ * </p>
+ *
+ * @see HyperLogLog
+ * @see MinHashLSH
+ */
+public class MinHash implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    public static final long DEFAULT_SEED = 0x5DEECE66DL;
+
+    private final long seed;
+    private final long[] seeds;
+    private final long[] mins;
+
+    /**
+     *
+     * @param numHashes The number of hash functions (the signature length)
+     */
+    public MinHash(int numHashes) {
+        this(numHashes, DEFAULT_SEED);
+    }
+
+    /**
+     *
+     * @param numHashes The number of hash functions (the signature length)
+     * @param seed The seed of the hash functions
+     */
+    public MinHash(int numHashes, long seed) {
+        if (numHashes <= 0) {
+            throw new IllegalArgumentException("numHashes = " + numHashes + "; expected a positive integer.");
+        }
+        this.seed = seed;
+        this.seeds = new long[numHashes];
+        Random random = new Random(seed);
+        for (int i = 0; i < numHashes; i++) {
+            seeds[i] = random.nextLong();
+        }
+        this.mins = new long[numHashes];
+        Arrays.fill(mins, Long.MAX_VALUE);
+    }
+
+    public static MinHash of(Collection<?> c, int numHashes) {
+        MinHash minHash = new MinHash(numHashes);
+        for (Object o : c) {
+            minHash.add(o);
+        }
+        return minHash;
+    }
+
+    public static MinHash of(int[] values, int numHashes) {
+        MinHash minHash = new MinHash(numHashes);
+        for (int value : values) {
+            minHash.add(value);
+        }
+        return minHash;
+    }
+
+    public static MinHash of(long[] values, int numHashes) {
+        MinHash minHash = new MinHash(numHashes);
+        for (long value : values) {
+            minHash.add(value);
+        }
+        return minHash;
+    }
+
+    public void add(Object o) {
+        addHash(Hashing.hash(o));
+    }
+
+    public void add(int value) {
+        addHash(Hashing.mix64(value));
+    }
+
+    /**
+     * Adds a long, hashed as {@link Long#hashCode()} does
+     *
+     * @param value
+     */
+    public void add(long value) {
+        addHash(Hashing.mix64((int) (value ^ (value >>> 32))));
+    }
+
+    private void addHash(long hash) {
+        for (int i = 0; i < mins.length; i++) {
+            long h = Hashing.mix64(hash ^ seeds[i]);
+            if (h < mins[i]) {
+                mins[i] = h;
+            }
+        }
+    }
+
+    private void checkCompatible(MinHash other) {
+        if (other.seed != seed || other.mins.length != mins.length) {
+            throw new IllegalArgumentException("Signatures built with different hash functions");
+        }
+    }
+
+    /**
+     * Turns this signature into the signature of the union of the two sets
+     *
+     * @param other
+     */
+    public void merge(MinHash other) {
+        checkCompatible(other);
+        for (int i = 0; i < mins.length; i++) {
+            mins[i] = Math.min(mins[i], other.mins[i]);
+        }
+    }
+
+    /**
+     *
+     * @param other
+     * @return the estimated Jaccard similarity of the two sets
+     */
+    public double jaccard(MinHash other) {
+        checkCompatible(other);
+        int equal = 0;
+        for (int i = 0; i < mins.length; i++) {
+            equal += mins[i] == other.mins[i] ? 1 : 0;
+        }
+        return equal / (double) mins.length;
+    }
+
+    /**
+     * Estimates the size of the intersection from the size of the union, for
+     * instance computed with {@link HyperLogLog#estimateUnion(HyperLogLog)}
+     *
+     * @param other
+     * @param unionSize The (estimated) size of the union of the two sets
+     * @return the estimated size of the intersection
+     */
+    public double estimateIntersection(MinHash other, double unionSize) {
+        return jaccard(other) * unionSize;
+    }
+
+    public int numHashes() {
+        return mins.length;
+    }
+
+    /**
+     *
+     * @return a copy of the signature
+     */
+    public long[] signature() {
+        return mins.clone();
+    }
+
+    long hashAt(int i) {
+        return mins[i];
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2012 Davide Mottin <mottin@disi.unitn.eu>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package eu.unitn.disi.db.mutilities.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Locality sensitive hashing index over {@link MinHash} signatures with the
+ * banding technique: the signature is cut in {@code bands} bands of
+ * {@code rows} values, two sets are candidates if they agree on a whole band.
+ * A pair with Jaccard similarity {@code s} becomes a candidate with
+ * probability {@code 1 - (1 - s^rows)^bands}, an S-curve whose steepest point
+ * is around {@link #threshold()}; similar sets are found without comparing
+ * all the pairs.
+ *
+ * @param <K> The type of the keys identifying the sets
+ */
+public class MinHashLSH<K> {
+
+    private final int bands;
+    private final int rows;
+    private final List<Map<Long, List<K>>> buckets;
+
+    /**
+     *
+     * @param bands The number of bands
+     * @param rows The number of signature values in a band, the signatures
+     * must have at least {@code bands * rows} hashes
+     */
+    public MinHashLSH(int bands, int rows) {
+        if (bands <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("Invalid bands " + bands + " or rows " + rows);
+        }
+        this.bands = bands;
+        this.rows = rows;
+        this.buckets = new ArrayList<>(bands);
+        for (int b = 0; b < bands; b++) {
+            buckets.add(new HashMap<>());
+        }
+    }
+
+    /**
+     *
+     * @return the similarity at which a pair is a candidate with probability
+     * about one half, {@code (1 / bands)^(1 / rows)}
+     */
+    public double threshold() {
+        return Math.pow(1.0 / bands, 1.0 / rows);
+    }
+
+    private long bandHash(MinHash signature, int band) {
+        if (signature.numHashes() < bands * rows) {
+            throw new IllegalArgumentException("Signature of " + signature.numHashes() + " hashes, expected at least " + bands * rows);
+        }
+        long hash = band;
+        for (int i = band * rows, end = i + rows; i < end; i++) {
+            hash = Hashing.mix64(hash ^ signature.hashAt(i));
+        }
+        return hash;
+    }
+
+    /**
+     * Indexes a set
+     *
+     * @param key The key of the set
+     * @param signature The signature of the set
+     */
+    public void add(K key, MinHash signature) {
+        for (int b = 0; b < bands; b++) {
+            buckets.get(b).computeIfAbsent(bandHash(signature, b), h -> new ArrayList<>(2)).add(key);
+        }
+    }
+
+    /**
+     *
+     * @param signature The signature of the query set
+     * @return the keys of the indexed sets agreeing with the query on at
+     * least a band
+     */
+    public Set<K> candidates(MinHash signature) {
+        Set<K> candidates = new HashSet<>();
+        for (int b = 0; b < bands; b++) {
+            List<K> bucket = buckets.get(b).get(bandHash(signature, b));
+            if (bucket != null) {
+                candidates.addAll(bucket);
+            }
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright (C) 2012 Davide Mottin <mottin@disi.unitn.eu>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package eu.unitn.disi.db.mutilities.data;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A read-only lazy view of the union, intersection, difference or symmetric
+ * difference of some sets. Nothing is copied: {@code contains} asks the
+ * operands and stops as soon as the answer is known, the iteration walks the
+ * operands through a {@link CompoundIterator} filtering out the elements not
+ * in the view. Since views are sets, they compose into expression trees,
+ * e.g. {@code intersection(union(a, b), difference(c, d))}.
+ *
+ * <p>
+ * The view reflects the current content of the operands. {@link #size()}
+ * iterates the whole view, use {@link #materialize()} to evaluate a view
+ * queried several times.
+ * </p>
+ *
+ * @param <E> The type of the elements
+ */
+public abstract class SetView<E> extends AbstractSet<E> {
+
+    /**
+     *
+     * @param <E> The type of the elements
+     * @param sets The operands
+     * @return a view of the elements in at least one set
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs") // the array is copied, never exposed
+    public static <E> SetView<E> union(Set<? extends E>... sets) {
+        return new Union<>(new ArrayList<>(Arrays.asList(sets)));
+    }
+
+    /**
+     *
+     * @param <E> The type of the elements
+     * @param sets The operands
+     * @return a view of the elements in at least one set
+     */
+    public static <E> SetView<E> union(List<? extends Set<? extends E>> sets) {
+        return new Union<>(new ArrayList<>(sets));
+    }
+
+    /**
+     *
+     * @param <E> The type of the elements
+     * @param sets The operands, at least one
+     * @return a view of the elements in all the sets
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs") // the array is copied, never exposed
+    public static <E> SetView<E> intersection(Set<? extends E>... sets) {
+        return new Intersection<>(Arrays.asList(sets));
+    }
+
+    /**
+     *
+     * @param <E> The type of the elements
+     * @param sets The operands, at least one
+     * @return a view of the elements in all the sets
+     */
+    public static <E> SetView<E> intersection(List<? extends Set<? extends E>> sets) {
+        return new Intersection<>(new ArrayList<>(sets));
+    }
+
+    /**
+     *
+     * @param <E> The type of the elements
+     * @param a The first operand
+     * @param b The second operand
+     * @return a view of the elements in {@code a} and not in {@code b}
+     */
+    public static <E> SetView<E> difference(Set<? extends E> a, Set<?> b) {
+        return new Difference<>(a, b);
+    }
+
+    /**
+     *
+     * @param <E> The type of the elements
+     * @param a The first operand
+     * @param b The second operand
+     * @return a view of the elements in exactly one of the sets
+     */
+    public static <E> SetView<E> symmetricDifference(Set<? extends E> a, Set<? extends E> b) {
+        return new SymmetricDifference<>(a, b);
+    }
+
+    /**
+     * An upper bound of the size, computed without iterating: used to drive
+     * the iteration from the cheapest operand
+     *
+     * @return the maximum number of elements of the view
+     */
+    public abstract long sizeBound();
+
+    /**
+     * Evaluates the view
+     *
+     * @return a new set with the elements of the view
+     */
+    public Set<E> materialize() {
+        Set<E> result = new HashSet<>();
+        for (E e : this) {
+            result.add(e);
+        }
+        return result;
+    }
+
+    /**
+     * Counts the elements by iterating the view
+     *
+     * @return the number of elements
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        for (Iterator<E> it = iterator(); it.hasNext(); it.next()) {
+            size++;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !iterator().hasNext();
+    }
+
+    private static long boundOf(Set<?> s) {
+        return s instanceof SetView ? ((SetView<?>) s).sizeBound() : s.size();
+    }
+
+    private static final Comparator<Set<?>> BY_SIZE_BOUND = (s1, s2) -> Long.compare(boundOf(s1), boundOf(s2));
+
+    @SuppressWarnings("unchecked")
+    private static <E> Iterator<E> filter(Set<? extends E> set, Predicate<? super E> keep) {
+        return new FilteringIterator<>((Iterator<E>) set.iterator(), keep);
+    }
+
+    private static final class Union<E> extends SetView<E> {
+
+        private final List<? extends Set<? extends E>> sets;
+
+        Union(List<? extends Set<? extends E>> sets) {
+            this.sets = sets;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            for (Set<? extends E> s : sets) {
+                if (s.contains(o)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Each element is returned by the first operand containing it
+         */
+        @Override
+        public Iterator<E> iterator() {
+            ArrayList<Iterator<E>> iters = new ArrayList<>(sets.size());
+            for (int i = 0; i < sets.size(); i++) {
+                final List<? extends Set<? extends E>> previous = sets.subList(0, i);
+                iters.add(filter(sets.get(i), (e) -> {
+                    for (Set<? extends E> s : previous) {
+                        if (s.contains(e)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            return new CompoundIterator<>(iters);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            for (Set<? extends E> s : sets) {
+                if (!s.isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public long sizeBound() {
+            long bound = 0;
+            for (Set<? extends E> s : sets) {
+                bound += boundOf(s);
+            }
+            return bound;
+        }
+    }
+
+    private static final class Intersection<E> extends SetView<E> {
+
+        /* sorted by size bound when the view is created */
+        private final List<Set<? extends E>> sets;
+
+        Intersection(List<? extends Set<? extends E>> sets) {
+            if (sets.isEmpty()) {
+                throw new IllegalArgumentException("Intersection of no sets");
+            }
+            this.sets = new ArrayList<>(sets);
+            this.sets.sort(BY_SIZE_BOUND);
+        }
+
+        /**
+         * Asks the smallest operands first, which are the most likely to
+         * reject
+         */
+        @Override
+        public boolean contains(Object o) {
+            for (Set<? extends E> s : sets) {
+                if (!s.contains(o)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Iterates the smallest operand keeping the elements in all the
+         * others
+         */
+        @Override
+        public Iterator<E> iterator() {
+            final List<Set<? extends E>> others = new ArrayList<>(sets);
+            others.sort(BY_SIZE_BOUND);
+            Set<? extends E> smallest = others.remove(0);
+            ArrayList<Iterator<E>> iters = new ArrayList<>(1);
+            iters.add(filter(smallest, (e) -> {
+                for (Set<? extends E> s : others) {
+                    if (!s.contains(e)) {
+                        return false;
+                    }
+                }
+                return true;
+            }));
+            return new CompoundIterator<>(iters);
+        }
+
+        @Override
+        public long sizeBound() {
+            long bound = Long.MAX_VALUE;
+            for (Set<? extends E> s : sets) {
+                bound = Math.min(bound, boundOf(s));
+            }
+            return bound;
+        }
+    }
+
+    private static final class Difference<E> extends SetView<E> {
+
+        private final Set<? extends E> a;
+        private final Set<?> b;
+
+        Difference(Set<? extends E> a, Set<?> b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return a.contains(o) && !b.contains(o);
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            ArrayList<Iterator<E>> iters = new ArrayList<>(1);
+            iters.add(filter(a, (e) -> !b.contains(e)));
+            return new CompoundIterator<>(iters);
+        }
+
+        @Override
+        public long sizeBound() {
+            return boundOf(a);
+        }
+    }
+
+    private static final class SymmetricDifference<E> extends SetView<E> {
+
+        private final Set<? extends E> a;
+        private final Set<? extends E> b;
+
+        SymmetricDifference(Set<? extends E> a, Set<? extends E> b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return a.contains(o) != b.contains(o);
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            ArrayList<Iterator<E>> iters = new ArrayList<>(2);
+            iters.add(filter(a, (e) -> !b.contains(e)));
+            iters.add(filter(b, (e) -> !a.contains(e)));
+            return new CompoundIterator<>(iters);
+        }
+
+        @Override
+        public long sizeBound() {
+            return boundOf(a) + boundOf(b);
+        }
+    }
+
+    /**
+     * Returns the elements of an iterator accepted by a predicate, it reads
+     * one element ahead
+     */
+    private static final class FilteringIterator<E> implements Iterator<E> {
+
+        private final Iterator<E> it;
+        private final Predicate<? super E> keep;
+        private E next;
+        private boolean ready;
+
+        FilteringIterator(Iterator<E> it, Predicate<? super E> keep) {
+            this.it = it;
+            this.keep = keep;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!ready && it.hasNext()) {
+                E e = it.next();
+                if (keep.test(e)) {
+                    next = e;
+                    ready = true;
+                }
+            }
+            return ready;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ready = false;
+            E e = next;
+            next = null;
+            return e;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2012 Davide Mottin <mottin@disi.unitn.eu>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package eu.unitn.disi.db.mutilities.data;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * A concurrent set split in a fixed number of shards, each one an
+ * independent concurrent set whose writes are serialized by its own lock: a
+ * shard grows on its own, so writers never wait for a resize of the whole
+ * set and writers on different shards never contend. Reads take no lock and
+ * update no counter, so they never block nor slow down each other. The shard
+ * of an element is chosen by a pluggable hash spreader. Null elements are not
+ * permitted.
+ *
+ * <p>
+ * Each shard counts the write operations and the contended lock
+ * acquisitions (the ones that found the lock taken), to tune the number of
+ * shards for a workload. Iterators are weakly consistent, as the ones of
+ * {@link ConcurrentHashMap}.
+ * </p>
+ *
+ * @param <E> The type of the elements
+ */
+public class ShardedConcurrentSet<E> extends AbstractSet<E> implements ConcurrentSet<E> {
+
+    /**
+     * Spreads the hash code of the elements on all the bits
+     */
+    public static final ToIntFunction<Object> DEFAULT_SPREADER = (o) -> (int) (Hashing.hash(o) >>> 32);
+
+    private final Shard<E>[] shards;
+    private final ToIntFunction<Object> spreader;
+
+    /**
+     *
+     * @param shardCount The number of shards
+     */
+    public ShardedConcurrentSet(int shardCount) {
+        this(shardCount, 16, DEFAULT_SPREADER);
+    }
+
+    /**
+     *
+     * @param shardCount The number of shards
+     * @param shardCapacity The initial capacity of each shard
+     */
+    public ShardedConcurrentSet(int shardCount, int shardCapacity) {
+        this(shardCount, shardCapacity, DEFAULT_SPREADER);
+    }
+
+    /**
+     *
+     * @param shardCount The number of shards
+     * @param shardCapacity The initial capacity of each shard
+     * @param spreader Maps an element to a hash, whose 32 bits are used to
+     * choose the shard
+     */
+    @SuppressWarnings("unchecked")
+    public ShardedConcurrentSet(int shardCount, int shardCapacity, ToIntFunction<Object> spreader) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount = " + shardCount + "; expected a positive integer.");
+        }
+        if (spreader == null) {
+            throw new NullPointerException("Spreader is null.");
+        }
+        this.spreader = spreader;
+        this.shards = (Shard<E>[]) new Shard<?>[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard<>(shardCapacity);
+        }
+    }
+
+    private Shard<E> shard(Object o) {
+        //Maps the 32 bits hash to [0, shards) with a multiplication
+        return shards[(int) (((spreader.applyAsInt(o) & 0xFFFFFFFFL) * shards.length) >>> 32)];
+    }
+
+    @Override
+    public boolean add(E e) {
+        Shard<E> shard = shard(e);
+        Lock lock = shard.lock();
+        try {
+            return shard.update(shard.set.add(e));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        Shard<E> shard = shard(o);
+        Lock lock = shard.lock();
+        try {
+            return shard.update(shard.set.remove(o));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return shard(o).set.contains(o);
+    }
+
+    /**
+     *
+     * @return the number of elements, exact only if no update is in progress
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        for (Shard<E> shard : shards) {
+            size += shard.size;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Shard<E> shard : shards) {
+            if (shard.size > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes all the elements, one shard at a time
+     */
+    @Override
+    public void clear() {
+        for (Shard<E> shard : shards) {
+            Lock lock = shard.lock();
+            try {
+                shard.set.clear();
+                shard.update(true);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int index = 0;
+            private Iterator<E> current = shards[0].set.iterator();
+            private E last = null;
+            private boolean canRemove = false;
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && index + 1 < shards.length) {
+                    current = shards[++index].set.iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                last = current.next();
+                canRemove = true;
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (!canRemove) {
+                    throw new IllegalStateException();
+                }
+                canRemove = false;
+                ShardedConcurrentSet.this.remove(last);
+            }
+        };
+    }
+
+    // STATISTICS
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     *
+     * @param shard The index of the shard
+     * @return the number of elements in the shard
+     */
+    public int shardSize(int shard) {
+        return shards[shard].size;
+    }
+
+    /**
+     *
+     * @param shard The index of the shard
+     * @return the number of write operations (add, remove, clear) on the
+     * shard, reads are not counted
+     */
+    public long shardAccesses(int shard) {
+        return shards[shard].accesses.sum();
+    }
+
+    /**
+     *
+     * @param shard The index of the shard
+     * @return the number of write operations that had to wait for the lock
+     * of the shard, held by another writer
+     */
+    public long shardContention(int shard) {
+        return shards[shard].contended.sum();
+    }
+
+    /**
+     *
+     * @return the size of each shard
+     */
+    public int[] shardSizes() {
+        int[] sizes = new int[shards.length];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = shards[i].size;
+        }
+        return sizes;
+    }
+
+    /**
+     * Resets the access and contention counters
+     */
+    public void resetStatistics() {
+        for (Shard<E> shard : shards) {
+            shard.accesses.reset();
+            shard.contended.reset();
+        }
+    }
+
+    private static final class Shard<E> {
+
+        private final Lock lock = new ReentrantLock();
+        private final Set<E> set;
+        private final LongAdder accesses = new LongAdder();
+        private final LongAdder contended = new LongAdder();
+        /**
+         * Size of the set, readable without locking
+         */
+        private volatile int size;
+
+        Shard(int capacity) {
+            this.set = ConcurrentHashMap.newKeySet(capacity);
+        }
+
+        /**
+         * Acquires the write lock, counting the access and whether it had to
+         * wait
+         */
+        Lock lock() {
+            if (!lock.tryLock()) {
+                contended.increment();
+                lock.lock();
+            }
+            accesses.increment();
+            return lock;
+        }
+
+        /**
+         * Publishes the size after a modification
+         */
+        boolean update(boolean modified) {
+            if (modified) {
+                size = set.size();
+            }
+            return modified;
+        }
+    }
+}